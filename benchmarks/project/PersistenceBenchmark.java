@@ -0,0 +1,149 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks of the persistence hot paths against a generated database: the
+// inventory and sales page loads, sale recording, price recording and
+// comparison, and the sales report. SampleTime mode reports latency
+// percentiles; run with -prof gc (build.gradle's jmh task does) for bytes
+// allocated per operation.
+//
+// The dataset comes from DataGenerator (one card per ten sales, skewed sales)
+// and is generated into a scratch database that is deleted after the trial.
+// With -Dbenchmark.dataDir=<dir> (a -jvmArgs option) the datasets are kept in
+// that directory instead and reused by later runs, so the 10M-row one only
+// has to be generated once.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int PAGE_SIZE = 200;
+
+    @Param({"10000", "1000000", "10000000"})
+    public long salesRows;
+
+    private Path db;
+    private boolean scratch;
+    private ConnectionPool pool;
+    private InventoryService service;
+    private InventoryFilter noFilter;
+    private SalesReportQuery allSales;
+    private int cards;
+    private int suppliers;
+    private long maxSaleId;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        String dataDir = System.getProperty("benchmark.dataDir");
+        scratch = dataDir == null;
+        db = scratch ? Files.createTempFile("benchmark", ".db")
+                : Paths.get(dataDir).resolve("benchmark-" + salesRows + ".db");
+        pool = new ConnectionPool("jdbc:sqlite:" + db, 4);
+        try (Connection conn = pool.writer()) {
+            InventoryManagementSystem.createSchema(conn);
+        }
+        if (queryLong("SELECT COUNT(*) FROM Sales") == 0) {
+            DataGenerator.Config config = new DataGenerator.Config();
+            config.cards = (int) Math.max(1000, salesRows / 10);
+            config.sales = salesRows;
+            DataGenerator.generate(pool, config, null);
+        }
+        cards = (int) queryLong("SELECT COUNT(*) FROM Cards");
+        suppliers = (int) queryLong("SELECT COUNT(*) FROM Suppliers");
+        maxSaleId = queryLong("SELECT COALESCE(MAX(sale_id), 0) FROM Sales");
+
+        service = new InventoryService(pool, new ReferenceDataCache(pool, 250_000));
+        noFilter = new InventoryFilter(null, null, null, null, null, null);
+        allSales = new SalesReportQuery(null, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        try {
+            if (pool != null) {
+                pool.close();
+            }
+        } finally {
+            if (scratch && db != null) {
+                Files.deleteIfExists(db);
+                Files.deleteIfExists(Paths.get(db + "-wal"));
+                Files.deleteIfExists(Paths.get(db + "-shm"));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<InventoryService.Card> inventoryPage() throws SQLException {
+        return service.listCards(noFilter, ThreadLocalRandom.current().nextInt(Math.max(1, cards - PAGE_SIZE)),
+                PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<InventoryService.Sale> salesPage() throws SQLException {
+        return service.listSales(allSales, 1 + ThreadLocalRandom.current().nextLong(maxSaleId + 1), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<InventoryService.SupplierPrice> comparePrices() throws SQLException {
+        return service.comparePrices(1 + ThreadLocalRandom.current().nextInt(cards));
+    }
+
+    @Benchmark
+    public void recordNewPrice() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        service.recordPrice(1 + random.nextInt(suppliers), 1 + random.nextInt(cards),
+                1 + random.nextInt(10_000) / 100.0);
+    }
+
+    @Benchmark
+    public long recordSale() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.recordSale(1 + random.nextInt(cards), 1 + random.nextInt(suppliers), 1,
+                1 + random.nextInt(10_000) / 100.0);
+    }
+
+    @Benchmark
+    public List<Object[]> salesReport() throws SQLException {
+        // A random 30-day window, as someone browsing the report would pick
+        LocalDate from = LocalDate.now().minusDays(ThreadLocalRandom.current().nextInt(365));
+        SalesReportQuery query = new SalesReportQuery(null, from.toString(), from.plusDays(30).toString());
+        service.summarize(query);
+        return service.breakdown(query, SalesReportEngine.Breakdown.SUPPLIER);
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Connection conn = pool.reader(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
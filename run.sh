@@ -0,0 +1,46 @@
+#!/bin/sh
+# Starts the inventory terminal with a class-data-sharing (AppCDS) archive, so
+# the JDK and application classes needed at startup are mapped from
+# inventory.jsa instead of being loaded, parsed and verified on every launch.
+#
+#   ./run.sh            launch; creates the archive on first exit if missing
+#   ./run.sh --train    start up once, write the archive and exit
+#
+# CDS only archives classes from jars, so bin/ is packaged into inventory.jar
+# whenever it has newer classes; that also invalidates the archive. Needs JDK
+# 21 or newer, and the archive only works with the JDK that wrote it; after
+# an upgrade it is rebuilt at the next exit.
+#
+# INVENTORY_LIB   jars next to the application, e.g. the SQLite JDBC driver (default lib)
+# INVENTORY_CDS   archive file (default inventory.jsa)
+# JAVA_OPTS       extra JVM options, e.g. -Dinventory.groupCommit=commit
+set -e
+cd "$(dirname "$0")"
+
+BIN="${JAVA_HOME:+$JAVA_HOME/bin/}"
+JAR=inventory.jar
+JSA="${INVENTORY_CDS:-inventory.jsa}"
+CP="$JAR:${INVENTORY_LIB:-lib}/*"
+
+if [ ! -f "$JAR" ] || [ -n "$(find bin -name '*.class' -newer "$JAR" | head -n 1)" ]; then
+    "${BIN}jar" cf "$JAR" -C bin .
+    rm -f "$JSA"
+fi
+
+if [ "$1" = "--train" ]; then
+    shift
+    rm -f "$JSA"
+    # Exits as soon as the window is up and the database is ready, so the
+    # archive holds exactly the classes startup needs. A failed startup exits
+    # non-zero and leaves no archive behind.
+    "${BIN}java" -XX:ArchiveClassesAtExit="$JSA" -Dinventory.startupExit=true \
+        $JAVA_OPTS -cp "$CP" project.InventoryManagementSystem "$@" || {
+        status=$?
+        rm -f "$JSA"
+        exit $status
+    }
+    exit 0
+fi
+
+exec "${BIN}java" -XX:+AutoCreateSharedArchive -XX:SharedArchiveFile="$JSA" \
+    $JAVA_OPTS -cp "$CP" project.InventoryManagementSystem "$@"
@@ -0,0 +1,82 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ranked prefix search over card name, category and rarity using the CardSearch
+// FTS5 index. "drag fi" matches cards with words starting with "drag" and "fi".
+public class CardSearch {
+
+    public static final class Match {
+        public final int cardId;
+        public final String name;
+        public final String category;
+        public final String rarity;
+        public final int quantity;
+
+        Match(int cardId, String name, String category, String rarity, int quantity) {
+            this.cardId = cardId;
+            this.name = name;
+            this.category = category;
+            this.rarity = rarity;
+            this.quantity = quantity;
+        }
+
+        @Override
+        public String toString() {
+            return name + "  [" + (category == null ? "" : category) + ", " + (rarity == null ? "" : rarity)
+                    + "]  #" + cardId + "  (" + quantity + " in stock)";
+        }
+    }
+
+    private static final String SEARCH_SQL =
+            "SELECT c.card_id, c.name, c.category, c.rarity, c.quantity " +
+            "FROM CardSearch f JOIN Cards c ON c.card_id = f.rowid " +
+            "WHERE CardSearch MATCH ? " +
+            "ORDER BY bm25(CardSearch, 10.0, 2.0, 1.0) " +
+            "LIMIT ?";
+
+    private final ConnectionPool pool;
+
+    public CardSearch(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public List<Match> search(String text, int limit) throws SQLException {
+        List<Match> matches = new ArrayList<>();
+        String expression = toMatchExpression(text);
+        if (expression.isEmpty()) {
+            return matches;
+        }
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_SQL)) {
+            pstmt.setString(1, expression);
+            pstmt.setInt(2, limit);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                matches.add(new Match(rs.getInt("card_id"), rs.getString("name"), rs.getString("category"),
+                        rs.getString("rarity"), rs.getInt("quantity")));
+            }
+        }
+        return matches;
+    }
+
+    // Each word becomes a quoted prefix term, so user input can't inject FTS syntax
+    static String toMatchExpression(String text) {
+        StringBuilder expression = new StringBuilder();
+        for (String word : text.trim().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append('"').append(word).append("\"*");
+        }
+        return expression.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package project;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.List;
+
+// Type-ahead card picker: a text field with a result list underneath. Queries
+// are debounced, and a query still running when the next one starts is
+// cancelled, so fast typing costs one search rather than one per keystroke.
+@SuppressWarnings("serial")  // Swing components here are never serialized
+public class CardSearchField extends JPanel {
+
+    private static final int DEBOUNCE_MS = 120;
+    private static final int MAX_RESULTS = 20;
+
+    private final CardSearch search;
+    private final DataAccessExecutor data;
+    private final JTextField field = new JTextField(24);
+    private final DefaultListModel<CardSearch.Match> results = new DefaultListModel<>();
+    private final JList<CardSearch.Match> list = new JList<>(results);
+    private final Timer debounce = new Timer(DEBOUNCE_MS, null);
+
+    private CardSearchField(CardSearch search, DataAccessExecutor data) {
+        super(new BorderLayout());
+        this.search = search;
+        this.data = data;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setVisibleRowCount(6);
+        debounce.setRepeats(false);
+
+        add(field, BorderLayout.NORTH);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+    }
+
+    public static CardSearchField create(CardSearch search, DataAccessExecutor data) {
+        CardSearchField searchField = new CardSearchField(search, data);
+        searchField.wireListeners();
+        return searchField;
+    }
+
+    // After construction, so no listener can see a half-built field
+    private void wireListeners() {
+        debounce.addActionListener(e -> runSearch());
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        // Enter in the text field selects the top result
+        field.addActionListener(e -> {
+            if (!results.isEmpty()) {
+                list.setSelectedIndex(0);
+            }
+        });
+    }
+
+    private void runSearch() {
+        String text = field.getText();
+        data.submitLatest(this, () -> search.search(text, MAX_RESULTS))
+            .whenComplete(DataAccessExecutor.onEdt((matches, e) -> {
+                if (e != null) {
+                    return;  // Keep the previous results; the next keystroke retries
+                }
+                showResults(matches);
+            }));
+    }
+
+    private void showResults(List<CardSearch.Match> matches) {
+        results.clear();
+        for (CardSearch.Match match : matches) {
+            results.addElement(match);
+        }
+        if (matches.size() == 1) {
+            list.setSelectedIndex(0);
+        }
+    }
+
+    // Null until the user picks a result
+    public CardSearch.Match getSelectedMatch() {
+        return list.getSelectedValue();
+    }
+
+    @Override
+    public boolean requestFocusInWindow() {
+        return field.requestFocusInWindow();
+    }
+}
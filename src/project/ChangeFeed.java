@@ -0,0 +1,161 @@
+package project;
+
+import javax.swing.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Tells open windows when a table they show has changed, whichever terminal
+// wrote it. A dedicated connection polls PRAGMA data_version, which only moves
+// when another connection commits, so an idle poll touches no table pages. When
+// it moves, the ChangeLog says which tables changed and their subscribers are
+// run on the EDT; they then pull their own deltas (see ChangeTracker). Given a
+// pool, the same thread also prunes the ChangeLog every few minutes.
+public class ChangeFeed implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ChangeFeed.class.getName());
+
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final String url;
+    private final long pollMillis;
+    private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong notifications = Metrics.counter("feed.notifications");
+    private ConnectionPool prunePool;
+
+    // Only touched on the poll thread
+    private Connection conn;
+    private long dataVersion = -1;
+    private long seq = -1;
+    private ScheduledExecutorService scheduler;
+
+    public ChangeFeed(String url, long pollMillis) {
+        this.url = url;
+        this.pollMillis = pollMillis;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+        if (prunePool != null && ChangeTracker.PRUNE_MINUTES > 0) {
+            ConnectionPool pool = prunePool;
+            scheduler.scheduleWithFixedDelay(() -> ChangeTracker.prune(pool),
+                    ChangeTracker.PRUNE_MINUTES, ChangeTracker.PRUNE_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    // Call before start(); the feed's own connection is query-only, so pruning
+    // goes through the pool's writer
+    public synchronized void pruneWith(ConnectionPool pool) {
+        prunePool = pool;
+    }
+
+    // listener runs on the EDT after each commit that changed table
+    public Subscription subscribe(String table, Runnable listener) {
+        listeners.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> listeners.get(table).remove(listener);
+    }
+
+    private void poll() {
+        try {
+            if (conn == null) {
+                conn = DriverManager.getConnection(url);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA busy_timeout = 5000");
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+                dataVersion = dataVersion();
+                // Resume after a reconnect; anything since is reported below
+                if (seq < 0) {
+                    seq = ChangeTracker.currentVersion(conn);
+                    return;
+                }
+            } else {
+                long version = dataVersion();
+                if (version == dataVersion) {
+                    return;
+                }
+                dataVersion = version;
+            }
+            Set<String> changed = new HashSet<>();
+            long latest = seq;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT table_name, MAX(seq) FROM ChangeLog WHERE seq > ? GROUP BY table_name")) {
+                pstmt.setLong(1, seq);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    changed.add(rs.getString(1));
+                    latest = Math.max(latest, rs.getLong(2));
+                }
+            }
+            seq = latest;
+            for (String table : changed) {
+                for (Runnable listener : listeners.getOrDefault(table, List.of())) {
+                    notifications.incrementAndGet();
+                    SwingUtilities.invokeLater(listener);
+                }
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Change feed poll failed, reconnecting", e);
+            closeConnection();
+        }
+    }
+
+    private long dataVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+            conn = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        closeConnection();
+    }
+}
@@ -0,0 +1,146 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Reads the ChangeLog that triggers on Cards, Suppliers and Sales append to. A
+// view remembers the version (last seq) it was loaded at and later asks for the
+// rows changed since, instead of reloading everything after each write.
+// Ops are I, U and D, plus A for sales moved out to an archive (SalesArchive)
+// and R, logged once per chunk by a bulk import (CsvImporter) in place of a row
+// per card; a view that finds an R reloads in full.
+public class ChangeTracker {
+
+    private static final Logger LOG = Logger.getLogger(ChangeTracker.class.getName());
+
+    // Log entries kept by prune(); views older than that reload in full
+    public static final int KEEP = 100_000;
+    // How often long-running processes prune, so the log stays bounded between restarts
+    public static final long PRUNE_MINUTES = Long.getLong("inventory.changeLog.pruneMinutes", 10);
+
+    // Net effect per row since a version: a row inserted and then deleted in the
+    // same window appears in neither set, one inserted then updated is inserted.
+    // Archived rows are gone from the table but not from history.
+    public static final class Changes {
+        public final long version;
+        public final boolean complete;
+        public final Set<Long> inserted;
+        public final Set<Long> updated;
+        public final Set<Long> deleted;
+        public final Set<Long> archived;
+
+        Changes(long version, boolean complete, Set<Long> inserted, Set<Long> updated, Set<Long> deleted,
+                Set<Long> archived) {
+            this.version = version;
+            this.complete = complete;
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.archived = archived;
+        }
+
+        public boolean isEmpty() {
+            return inserted.isEmpty() && updated.isEmpty() && deleted.isEmpty() && archived.isEmpty();
+        }
+
+        public int size() {
+            return inserted.size() + updated.size() + deleted.size() + archived.size();
+        }
+
+        // Rows no longer in the table, whether deleted or archived
+        public int removed() {
+            return deleted.size() + archived.size();
+        }
+    }
+
+    private ChangeTracker() {
+    }
+
+    public static long currentVersion(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT IFNULL(MAX(seq), 0) FROM ChangeLog")) {
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Not complete if entries after version were pruned, or the database was
+    // replaced by an older copy; the caller should then reload in full.
+    public static Changes since(Connection conn, String table, long version) throws SQLException {
+        long oldest;
+        long latest;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MIN(seq), MAX(seq) FROM ChangeLog")) {
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            oldest = rs.getLong(1);
+            latest = rs.getLong(2);
+        }
+        Set<Long> inserted = new LinkedHashSet<>();
+        Set<Long> updated = new LinkedHashSet<>();
+        Set<Long> deleted = new LinkedHashSet<>();
+        Set<Long> archived = new LinkedHashSet<>();
+        boolean complete = version <= latest && (oldest == 0 || oldest <= version + 1);
+        if (!complete || version == latest) {
+            return new Changes(latest, complete, inserted, updated, deleted, archived);
+        }
+
+        Map<Long, String> firstOp = new HashMap<>();
+        Map<Long, String> lastOp = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT row_id, op FROM ChangeLog WHERE table_name = ? AND seq > ? AND seq <= ? ORDER BY seq")) {
+            pstmt.setString(1, table);
+            pstmt.setLong(2, version);
+            pstmt.setLong(3, latest);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                long rowId = rs.getLong(1);
+                String op = rs.getString(2);
+                if (op.equals("R")) {
+                    return new Changes(latest, false, inserted, updated, deleted, archived);
+                }
+                firstOp.putIfAbsent(rowId, op);
+                lastOp.put(rowId, op);
+            }
+        }
+        for (Map.Entry<Long, String> entry : lastOp.entrySet()) {
+            boolean created = firstOp.get(entry.getKey()).equals("I");
+            boolean removed = entry.getValue().equals("D") || entry.getValue().equals("A");
+            if (created && !removed) {
+                inserted.add(entry.getKey());
+            } else if (removed && !created) {
+                (entry.getValue().equals("A") ? archived : deleted).add(entry.getKey());
+            } else if (!created) {
+                updated.add(entry.getKey());
+            }
+        }
+        return new Changes(latest, true, inserted, updated, deleted, archived);
+    }
+
+    // Drops all but the newest keep entries; returns how many were removed
+    public static int prune(Connection conn, int keep) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "DELETE FROM ChangeLog WHERE seq <= (SELECT MAX(seq) FROM ChangeLog) - ?")) {
+            pstmt.setInt(1, keep);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    // For the periodic prune: takes the writer and logs a failure, the next run retries
+    static void prune(ConnectionPool pool) {
+        try (Connection conn = pool.writer()) {
+            int removed = prune(conn, KEEP);
+            if (removed > 0) {
+                LOG.fine(() -> "Pruned " + removed + " ChangeLog entries");
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "ChangeLog prune failed", e);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package project;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Small pool of long-lived SQLite connections: one writer and several read-only
+// readers, which is what WAL mode allows to run concurrently. Connections are
+// configured once when opened, handed out as proxies whose close() returns them
+// to the pool, and keep a per-connection cache of prepared statements.
+// Acquisition waits, statement execution, result fetching and commits are
+// timed into Metrics (pool.acquire, sql.execute, sql.fetch, sql.commit), and
+// reported as JFR events while a recording is running.
+public class ConnectionPool {
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final long ACQUIRE_TIMEOUT_MS = 30_000;
+    private static final long VALIDATE_AFTER_IDLE_MS = 60_000;
+
+    private final String url;
+    private final int maxReaders;
+    private final BlockingQueue<PooledConnection> writer = new ArrayBlockingQueue<>(1);
+    private final BlockingQueue<PooledConnection> readers;
+    private int openReaders;
+    private boolean writerOpened;
+    // Extra database files ATTACHed to readers, by schema name (see SalesArchive)
+    private volatile Map<String, String> attachments = Map.of();
+
+    // Metrics
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong replacedConnections = new AtomicLong();
+    private final LatencyHistogram acquireTimer = Metrics.timer("pool.acquire");
+    private final LatencyHistogram executeTimer = Metrics.timer("sql.execute");
+    private final LatencyHistogram fetchTimer = Metrics.timer("sql.fetch");
+    private final LatencyHistogram commitTimer = Metrics.timer("sql.commit");
+    private final AtomicLong sqlErrors = Metrics.counter("sql.errors");
+    private final AtomicLong rollbacks = Metrics.counter("sql.rollbacks");
+
+    public ConnectionPool(String url, int maxReaders) {
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.readers = new ArrayBlockingQueue<>(maxReaders);
+    }
+
+    // The single writer connection. Callers queue up here instead of fighting
+    // over SQLite's write lock with busy_timeout retries.
+    public Connection writer() throws SQLException {
+        synchronized (this) {
+            if (!writerOpened) {
+                writer.add(open(false));
+                writerOpened = true;
+            }
+        }
+        return acquire(writer, false);
+    }
+
+    // A read-only connection. Readers are opened lazily up to maxReaders.
+    public Connection reader() throws SQLException {
+        synchronized (this) {
+            if (readers.isEmpty() && openReaders < maxReaders) {
+                readers.add(open(true));
+                openReaders++;
+            }
+        }
+        return acquire(readers, true);
+    }
+
+    private Connection acquire(BlockingQueue<PooledConnection> queue, boolean readOnly) throws SQLException {
+        long start = System.nanoTime();
+        JfrEvents.ConnectionWait waitEvent = new JfrEvents.ConnectionWait();
+        waitEvent.begin();
+        PooledConnection pooled;
+        try {
+            pooled = queue.poll(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (pooled == null) {
+            throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+        }
+        long waited = System.nanoTime() - start;
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        acquireTimer.record(waited);
+        waitEvent.end();
+        if (waitEvent.shouldCommit()) {
+            waitEvent.readOnly = readOnly;
+            waitEvent.commit();
+        }
+
+        try {
+            if (!isHealthy(pooled)) {
+                pooled.closePhysical();
+                replacedConnections.incrementAndGet();
+                pooled = open(readOnly);
+            }
+            if (readOnly) {
+                syncAttachments(pooled);
+            }
+        } catch (SQLException e) {
+            // pooled may be closed or half-attached; never hand it out again
+            pooled.closePhysical();
+            replacedConnections.incrementAndGet();
+            replace(queue, readOnly);
+            throw e;
+        }
+        active.incrementAndGet();
+        pooled.checkedOut = true;
+        return pooled.proxy;
+    }
+
+    // Puts a fresh connection in a discarded one's place; if that cannot be
+    // opened either, frees the slot so the next caller opens one lazily
+    private void replace(BlockingQueue<PooledConnection> queue, boolean readOnly) {
+        try {
+            queue.add(open(readOnly));
+        } catch (SQLException e) {
+            synchronized (this) {
+                if (readOnly) {
+                    openReaders--;
+                } else {
+                    writerOpened = false;
+                }
+            }
+        }
+    }
+
+    private boolean isHealthy(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < VALIDATE_AFTER_IDLE_MS) {
+            return true;
+        }
+        try (Statement stmt = pooled.physical.createStatement()) {
+            stmt.executeQuery("SELECT 1").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Readers pick up the new set the next time they are checked out
+    public void setAttachments(Map<String, String> attachments) {
+        this.attachments = Map.copyOf(attachments);
+    }
+
+    public Map<String, String> getAttachments() {
+        return attachments;
+    }
+
+    // Compares with PRAGMA database_list rather than what was last asked for,
+    // so a sync that failed halfway is simply redone on the next checkout
+    private void syncAttachments(PooledConnection pooled) throws SQLException {
+        Map<String, String> wanted = attachments;
+        if (pooled.attached == wanted) {
+            return;
+        }
+        Map<String, String> current = new LinkedHashMap<>();
+        try (Statement stmt = pooled.physical.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (!name.equals("main") && !name.equals("temp")) {
+                    current.put(name, rs.getString("file"));
+                }
+            }
+        }
+        try (Statement stmt = pooled.physical.createStatement()) {
+            for (Map.Entry<String, String> entry : current.entrySet()) {
+                if (!entry.getValue().equals(wanted.get(entry.getKey()))) {
+                    stmt.execute("DETACH DATABASE " + entry.getKey());
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : wanted.entrySet()) {
+            if (!entry.getValue().equals(current.get(entry.getKey()))) {
+                try (PreparedStatement pstmt = pooled.physical.prepareStatement(
+                        "ATTACH DATABASE ? AS " + entry.getKey())) {
+                    pstmt.setString(1, entry.getValue());
+                    pstmt.execute();
+                }
+            }
+        }
+        pooled.attached = wanted;
+    }
+
+    private PooledConnection open(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            stmt.execute("PRAGMA journal_mode = WAL");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+        return new PooledConnection(conn, readOnly ? readers : writer, readOnly);
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!pooled.checkedOut) {
+            return;
+        }
+        pooled.checkedOut = false;
+        pooled.lastUsed = System.currentTimeMillis();
+        try {
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // Broken connection, the health check replaces it on next use
+            pooled.lastUsed = 0;
+        }
+        active.decrementAndGet();
+        pooled.home.add(pooled);
+    }
+
+    public synchronized void close() {
+        for (PooledConnection pooled : writer) {
+            pooled.closePhysical();
+        }
+        for (PooledConnection pooled : readers) {
+            pooled.closePhysical();
+        }
+        writer.clear();
+        readers.clear();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquisitions.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public String stats() {
+        return String.format("active=%d acquisitions=%d avgWait=%.3fms maxWait=%.3fms "
+                + "stmtCacheHits=%d stmtCacheMisses=%d replaced=%d",
+                getActiveCount(), getAcquisitions(), getAverageWaitMillis(), getMaxWaitMillis(),
+                statementCacheHits.get(), statementCacheMisses.get(), replacedConnections.get());
+    }
+
+    // Key of the row just inserted by a statement prepared with
+    // RETURN_GENERATED_KEYS, read from that statement rather than the connection
+    static long generatedKey(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("Insert returned no generated key");
+            }
+            return keys.getLong(1);
+        }
+    }
+
+    private class PooledConnection implements InvocationHandler {
+        final Connection physical;
+        final Connection proxy;
+        final BlockingQueue<PooledConnection> home;
+        final boolean readOnly;
+        final Map<String, CachedStatement> statements;
+        volatile boolean checkedOut;
+        volatile long lastUsed = System.currentTimeMillis();
+        Map<String, String> attached = Map.of();
+
+        PooledConnection(Connection physical, BlockingQueue<PooledConnection> home, boolean readOnly) {
+            this.physical = physical;
+            this.home = home;
+            this.readOnly = readOnly;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, this);
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        eldest.getValue().closePhysical();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release(this);
+                    return null;
+                case "isClosed":
+                    return !checkedOut || physical.isClosed();
+                case "prepareStatement":
+                    if (args.length == 1) {
+                        return prepareCached((String) args[0], Statement.NO_GENERATED_KEYS);
+                    }
+                    if (args.length == 2 && args[1] instanceof Integer) {
+                        return prepareCached((String) args[0], (Integer) args[1]);
+                    }
+                    break;
+                case "rollback":
+                    rollbacks.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            if (!checkedOut) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            long start = System.nanoTime();
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (method.getName().equals("commit")) {
+                    commitTimer.record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        private PreparedStatement prepareCached(String sql, int autoGeneratedKeys) throws SQLException {
+            String cacheKey = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+            CachedStatement cached = statements.get(cacheKey);
+            if (cached == null) {
+                statementCacheMisses.incrementAndGet();
+                cached = new CachedStatement(sql, physical.prepareStatement(sql, autoGeneratedKeys), proxy, readOnly);
+                statements.put(cacheKey, cached);
+            } else {
+                statementCacheHits.incrementAndGet();
+            }
+            return cached.proxy;
+        }
+
+        void closePhysical() {
+            for (CachedStatement cached : statements.values()) {
+                cached.closePhysical();
+            }
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+        }
+    }
+
+    // Prepared statement kept open across checkouts; close() only resets it.
+    private class CachedStatement implements InvocationHandler {
+        final String sql;
+        final PreparedStatement physical;
+        final PreparedStatement proxy;
+        final Connection owner;
+        final boolean readOnly;
+        ResultSet lastResult;
+        long queryStarted;
+        long queryExecuted;
+        // Only while a recording wants SQL events
+        JfrEvents.SqlStatement pendingEvent;
+        long rowsRead;
+
+        CachedStatement(String sql, PreparedStatement physical, Connection owner, boolean readOnly) {
+            this.sql = sql;
+            this.readOnly = readOnly;
+            this.physical = physical;
+            this.owner = owner;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    reset();
+                    return null;
+                case "isClosed":
+                    return physical.isClosed();
+                case "getConnection":
+                    return owner;
+                default:
+                    break;
+            }
+            boolean execute = method.getName().startsWith("execute");
+            long start = execute ? System.nanoTime() : 0;
+            JfrEvents.SqlStatement event = null;
+            if (execute) {
+                event = new JfrEvents.SqlStatement();
+                event.begin();
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (execute) {
+                    long end = System.nanoTime();
+                    executeTimer.record(end - start);
+                    if (result instanceof ResultSet) {
+                        // Finished when the rows have been read, see reset()
+                        lastResult = (ResultSet) result;
+                        queryStarted = start;
+                        queryExecuted = end;
+                        if (event.isEnabled()) {
+                            pendingEvent = event;
+                            pendingEvent.kind = "query";
+                            pendingEvent.executeNanos = end - start;
+                            rowsRead = 0;
+                            return countingRows(lastResult);
+                        }
+                    } else {
+                        Metrics.slowQuery(sql, end - start);
+                        if (event.shouldCommit()) {
+                            event.end();
+                            event.sql = sql;
+                            event.kind = method.getName().equals("executeBatch") ? "batch" : "update";
+                            event.rows = changedRows(result);
+                            event.executeNanos = end - start;
+                            event.readOnly = readOnly;
+                            event.commit();
+                        }
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                if (execute) {
+                    sqlErrors.incrementAndGet();
+                }
+                throw e.getCause();
+            }
+        }
+
+        // Closing the result set matters: an open cursor pins a WAL read snapshot
+        private void reset() throws SQLException {
+            if (lastResult != null) {
+                long end = System.nanoTime();
+                fetchTimer.record(end - queryExecuted);
+                Metrics.slowQuery(sql, end - queryStarted);
+                lastResult.close();
+                lastResult = null;
+            }
+            if (pendingEvent != null) {
+                pendingEvent.end();
+                if (pendingEvent.shouldCommit()) {
+                    pendingEvent.sql = sql;
+                    pendingEvent.rows = rowsRead;
+                    pendingEvent.readOnly = readOnly;
+                    pendingEvent.commit();
+                }
+                pendingEvent = null;
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+        }
+
+        // Counts next() calls for the SQL event; only used while recording
+        private ResultSet countingRows(ResultSet rs) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, (p, m, a) -> {
+                        try {
+                            Object value = m.invoke(rs, a);
+                            if (Boolean.TRUE.equals(value) && m.getName().equals("next")) {
+                                rowsRead++;
+                            }
+                            return value;
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        private long changedRows(Object result) {
+            if (result instanceof Integer) {
+                return (Integer) result;
+            }
+            if (result instanceof int[]) {
+                long total = 0;
+                for (int count : (int[]) result) {
+                    total += Math.max(0, count);
+                }
+                return total;
+            }
+            return 0;
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // Ignore, the connection is going away
+            }
+        }
+    }
+}
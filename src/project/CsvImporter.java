@@ -0,0 +1,652 @@
+package project;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Streaming CSV import for Cards, Suppliers and SupplierPrices. The file is
+// parsed one record at a time, valid rows go into JDBC batches that are
+// committed in chunks, and rejected rows are written out with the reason.
+//
+// Headless: java project.CsvImporter <cards|suppliers|prices> <file.csv> [inventory.db]
+public class CsvImporter {
+
+    private static final int CHUNK_SIZE = 5000;
+    // From about 25k rows, dropping the Cards indexes and building them again at
+    // the end is several times cheaper than updating five indexes per row
+    private static final long DEFER_INDEXES_BYTES = 1 << 20;
+
+    public enum Kind {
+        CARDS("INSERT INTO Cards(name, category, rarity, value, quantity) VALUES(?,?,?,?,?)",
+                "name", "category", "rarity", "value", "quantity"),
+        SUPPLIERS("INSERT INTO Suppliers(name, contact, email, phone) VALUES(?,?,?,?)",
+                "name", "contact", "email", "phone"),
+        PRICES("INSERT INTO SupplierPrices (supplier_id, card_id, price, last_updated) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT(supplier_id, card_id) DO UPDATE SET " +
+                "price = excluded.price, last_updated = excluded.last_updated",
+                "supplier_id", "card_id", "price", "last_updated");
+
+        final String sql;
+        final String[] columns;
+
+        Kind(String sql, String... columns) {
+            this.sql = sql;
+            this.columns = columns;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Progress {
+        void update(long rows, long bytesRead, long totalBytes);
+    }
+
+    public static final class Result {
+        public final long imported;
+        public final long rejected;
+        public final long elapsedMs;
+
+        Result(long imported, long rejected, long elapsedMs) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMs == 0 ? imported : imported * 1000.0 / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d rows, rejected %d, in %d ms (%.0f rows/sec)",
+                    imported, rejected, elapsedMs, rowsPerSecond());
+        }
+    }
+
+    private static class RejectedRow extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RejectedRow(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final ConnectionPool pool;
+
+    public CsvImporter(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Imports the file; rejects go to rejectsFile when it is not null
+    public Result importFile(Kind kind, Path file, Path rejectsFile, Progress progress)
+            throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long totalBytes = Files.size(file);
+        long imported = 0;
+        long rejected = 0;
+
+        // Cards from chunks already committed are indexed even if the import stops
+        List<long[]> cardRanges = new ArrayList<>();
+        boolean deferIndexes = kind == Kind.CARDS && totalBytes >= DEFER_INDEXES_BYTES;
+        if (deferIndexes) {
+            try (Connection conn = pool.writer()) {
+                SchemaMigrations.dropCardIndexes(conn);
+            }
+        }
+        try (ChunkCommitter committer = new ChunkCommitter(kind, cardRanges);
+             CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+             Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+             Writer rejects = rejectsFile == null ? Writer.nullWriter()
+                     : Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+
+            CsvReader csv = new CsvReader(reader);
+            List<String> header = csv.next();
+            if (header == null) {
+                return new Result(0, 0, 0);
+            }
+            int[] positions = mapHeader(kind, header);
+            rejects.write("line,reason," + String.join(",", header) + "\n");
+
+            BitSet cardIds = kind == Kind.PRICES ? loadIds("SELECT card_id FROM Cards") : null;
+            BitSet supplierIds = kind == Kind.PRICES ? loadIds("SELECT supplier_id FROM Suppliers") : null;
+            String today = LocalDate.now().toString();
+
+            List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                if (record.size() == 1 && record.get(0).isEmpty()) {
+                    continue;  // Blank line
+                }
+                try {
+                    chunk.add(values(kind, record, positions, cardIds, supplierIds, today));
+                } catch (RejectedRow e) {
+                    rejected++;
+                    rejects.write(csv.recordLine() + "," + quote(e.getMessage()) + "," + joinCsv(record) + "\n");
+                    continue;
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    committer.submit(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    if (progress != null) {
+                        progress.update(committer.committed, in.count, totalBytes);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                committer.submit(chunk);
+            }
+            imported = committer.await();
+            if (progress != null) {
+                progress.update(imported, totalBytes, totalBytes);
+            }
+        } finally {
+            finishCards(cardRanges, deferIndexes);
+        }
+        return new Result(imported, rejected, System.currentTimeMillis() - start);
+    }
+
+    // Commits chunks on its own thread while the caller parses the next one, so
+    // parsing and SQLite overlap. One chunk at most is in flight.
+    private final class ChunkCommitter implements AutoCloseable {
+        private final ExecutorService thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "csv-import");
+            t.setDaemon(true);
+            return t;
+        });
+        private final Kind kind;
+        private final List<long[]> cardRanges;
+        private Future<Integer> pending;
+        volatile long committed;
+
+        ChunkCommitter(Kind kind, List<long[]> cardRanges) {
+            this.kind = kind;
+            this.cardRanges = cardRanges;
+        }
+
+        // Waits for the chunk in flight, then hands this one over
+        void submit(List<Object[]> chunk) throws SQLException {
+            long before = await();
+            pending = thread.submit(() -> commitChunk(kind, chunk, before, cardRanges));
+        }
+
+        // Rows committed, once the chunk in flight is done
+        long await() throws SQLException {
+            if (pending != null) {
+                Future<Integer> chunk = pending;
+                pending = null;
+                try {
+                    committed += chunk.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException) {
+                        throw (SQLException) e.getCause();
+                    }
+                    throw new SQLException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while importing", e);
+                }
+            }
+            return committed;
+        }
+
+        // Lets a chunk still in flight finish, so its cards are indexed too
+        @Override
+        public void close() {
+            thread.shutdown();
+            try {
+                thread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // The writer is checked out for one chunk at a time, so sales and edits from
+    // this terminal get their turn between chunks instead of waiting out the import
+    private int commitChunk(Kind kind, List<Object[]> chunk, long imported, List<long[]> cardRanges)
+            throws SQLException {
+        try (Connection conn = pool.writer()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(kind.sql)) {
+                long lastCardId = kind == Kind.CARDS ? maxCardId(conn) : 0;
+                List<String> triggers = kind == Kind.CARDS ? dropCardTriggers(conn) : null;
+                for (Object[] row : chunk) {
+                    for (int i = 0; i < row.length; i++) {
+                        pstmt.setObject(i + 1, row[i]);
+                    }
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                if (kind == Kind.CARDS) {
+                    restoreCardTriggers(conn, triggers, lastCardId, cardRanges);
+                }
+                conn.commit();
+                return chunk.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Import stopped after " + imported + " rows: " + e.getMessage(), e);
+        }
+    }
+
+    // Per-row search index and ChangeLog upkeep cost several times the insert
+    // itself, so the card insert triggers are dropped for the chunk and created
+    // again before it commits; other connections never see them missing.
+    // Returns the SQL to create them again.
+    private static List<String> dropCardTriggers(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<String> triggers = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT name, sql FROM sqlite_master WHERE type = 'trigger' " +
+                    "AND name IN ('trg_cards_search_insert', 'trg_cards_changelog_insert')")) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                    triggers.add(rs.getString(2));
+                }
+            }
+            for (String name : names) {
+                stmt.execute("DROP TRIGGER " + name);
+            }
+        }
+        return triggers;
+    }
+
+    // Restores the triggers and logs a single R, so open views reload once
+    // instead of reading a ChangeLog row per card. The write lock is held
+    // throughout, so the chunk's card_ids are one contiguous range; it is noted
+    // for indexSearch.
+    private static void restoreCardTriggers(Connection conn, List<String> triggers, long lastCardId,
+            List<long[]> cardRanges) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String trigger : triggers) {
+                stmt.execute(trigger);
+            }
+            stmt.execute("INSERT INTO ChangeLog(table_name, row_id, op) VALUES ('Cards', 0, 'R')");
+        }
+        long last = maxCardId(conn);
+        long[] previous = cardRanges.isEmpty() ? null : cardRanges.get(cardRanges.size() - 1);
+        if (previous != null && previous[1] == lastCardId) {
+            previous[1] = last;
+        } else {
+            cardRanges.add(new long[] {lastCardId + 1, last});
+        }
+    }
+
+    private static long importedCards(List<long[]> cardRanges) {
+        long count = 0;
+        for (long[] range : cardRanges) {
+            count += range[1] - range[0] + 1;
+        }
+        return count;
+    }
+
+    private static long countCards(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Cards")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long maxCardId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(card_id), 0) FROM Cards")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Adds the imported cards to the search index and builds the Cards indexes
+    // again if they were dropped. The indexes are built last: if the import
+    // stops there, the next start builds them (see SchemaMigrations).
+    private void finishCards(List<long[]> cardRanges, boolean deferIndexes) throws SQLException {
+        try {
+            if (!cardRanges.isEmpty()) {
+                indexSearch(cardRanges);
+            }
+        } finally {
+            if (deferIndexes) {
+                // Each CREATE INDEX commits on its own, so the writer is freed between them
+                try (Connection conn = pool.writer()) {
+                    SchemaMigrations.createCardIndexes(conn);
+                }
+            }
+        }
+    }
+
+    // One transaction for all the imported cards. Indexing per chunk costs
+    // several times more, as each commit writes an FTS segment that later chunks
+    // merge again. Only the imported ranges are indexed, since cards added
+    // meanwhile on other terminals went through the trigger.
+    private void indexSearch(List<long[]> cardRanges) throws SQLException {
+        try (Connection conn = pool.writer()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO CardSearch(rowid, name, category, rarity) " +
+                            "SELECT card_id, name, category, rarity FROM Cards WHERE card_id BETWEEN ? AND ?")) {
+                if (importedCards(cardRanges) * 2 > countCards(conn)) {
+                    // Mostly new cards: rebuilding the whole index is cheaper
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("INSERT INTO CardSearch(CardSearch) VALUES('rebuild')");
+                    }
+                } else {
+                    for (long[] range : cardRanges) {
+                        pstmt.setLong(1, range[0]);
+                        pstmt.setLong(2, range[1]);
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int[] mapHeader(Kind kind, List<String> header) throws IOException {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            index.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        int[] positions = new int[kind.columns.length];
+        for (int i = 0; i < kind.columns.length; i++) {
+            Integer pos = index.get(kind.columns[i]);
+            if (pos == null && i == 0) {
+                throw new IOException("Missing required column '" + kind.columns[i] + "' in header");
+            }
+            positions[i] = pos == null ? -1 : pos;
+        }
+        return positions;
+    }
+
+    // Parameters for kind.sql, in order
+    private static Object[] values(Kind kind, List<String> record, int[] positions,
+            BitSet cardIds, BitSet supplierIds, String today) throws RejectedRow {
+        switch (kind) {
+            case CARDS:
+                return new Object[] {
+                        required(record, positions[0], "name"),
+                        optional(record, positions[1]),
+                        optional(record, positions[2]),
+                        nonNegativeDouble(record, positions[3], "value"),
+                        nonNegativeInt(record, positions[4], "quantity")};
+            case SUPPLIERS:
+                return new Object[] {
+                        required(record, positions[0], "name"),
+                        optional(record, positions[1]),
+                        optional(record, positions[2]),
+                        optional(record, positions[3])};
+            case PRICES:
+                int supplierId = nonNegativeInt(record, positions[0], "supplier_id");
+                int cardId = nonNegativeInt(record, positions[1], "card_id");
+                if (!supplierIds.get(supplierId)) {
+                    throw new RejectedRow("Unknown supplier_id " + supplierId);
+                }
+                if (!cardIds.get(cardId)) {
+                    throw new RejectedRow("Unknown card_id " + cardId);
+                }
+                String date = optional(record, positions[3]);
+                if (date == null) {
+                    date = today;
+                } else {
+                    try {
+                        LocalDate.parse(date);
+                    } catch (DateTimeParseException e) {
+                        throw new RejectedRow("Invalid last_updated '" + date + "'");
+                    }
+                }
+                return new Object[] {supplierId, cardId, nonNegativeDouble(record, positions[2], "price"), date};
+            default:
+                throw new IllegalStateException(kind.name());
+        }
+    }
+
+    private static String optional(List<String> record, int pos) {
+        if (pos < 0 || pos >= record.size()) {
+            return null;
+        }
+        String value = record.get(pos).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String required(List<String> record, int pos, String column) throws RejectedRow {
+        String value = optional(record, pos);
+        if (value == null) {
+            throw new RejectedRow("Missing " + column);
+        }
+        return value;
+    }
+
+    private static double nonNegativeDouble(List<String> record, int pos, String column) throws RejectedRow {
+        String value = required(record, pos, column);
+        try {
+            double parsed = Double.parseDouble(value);
+            if (parsed < 0 || Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+                throw new RejectedRow("Invalid " + column + " '" + value + "'");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new RejectedRow("Invalid " + column + " '" + value + "'");
+        }
+    }
+
+    private static int nonNegativeInt(List<String> record, int pos, String column) throws RejectedRow {
+        String value = required(record, pos, column);
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new RejectedRow("Invalid " + column + " '" + value + "'");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new RejectedRow("Invalid " + column + " '" + value + "'");
+        }
+    }
+
+    private BitSet loadIds(String query) throws SQLException {
+        BitSet ids = new BitSet();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                ids.set(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static String joinCsv(List<String> record) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < record.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(quote(record.get(i)));
+        }
+        return sb.toString();
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // RFC 4180 style reader: quoted fields may contain commas, quotes and newlines.
+    // Reads through its own buffer; a Reader.read() per character takes the
+    // reader's lock each time and costs more than the parsing.
+    static final class CsvReader {
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private long line = 1;
+        private long recordLine;
+        private int pushback = -2;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        long recordLine() {
+            return recordLine;
+        }
+
+        private int read() throws IOException {
+            if (pushback != -2) {
+                int c = pushback;
+                pushback = -2;
+                return c;
+            }
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            recordLine = line;
+            List<String> record = new ArrayList<>();
+            boolean quoted = false;
+            field.setLength(0);
+            while (true) {
+                if (c == -1) {
+                    record.add(field.toString());
+                    return record;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        int n = read();
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = n;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        int n = read();
+                        if (n != '\n') {
+                            pushback = n;
+                        }
+                    }
+                    line++;
+                    record.add(field.toString());
+                    return record;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java project.CsvImporter <cards|suppliers|prices> <file.csv> [inventory.db]");
+            System.exit(2);
+        }
+        Kind kind = Kind.valueOf(args[0].toUpperCase(Locale.ROOT));
+        Path file = Paths.get(args[1]);
+        String db = args.length > 2 ? args[2] : "inventory.db";
+        Path rejects = Paths.get(args[1] + ".rejects.csv");
+
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + db, 1);
+        try {
+            try (Connection conn = pool.writer()) {
+                InventoryManagementSystem.createSchema(conn);
+            }
+            Result result = new CsvImporter(pool).importFile(kind, file, rejects,
+                    (rows, read, total) -> System.out.printf("\r%d rows (%d%%)", rows, total == 0 ? 100 : read * 100 / total));
+            System.out.println();
+            System.out.println(result);
+            if (result.rejected > 0) {
+                System.out.println("Rejected rows written to " + rejects);
+            }
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package project;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+// Runs JDBC work on virtual threads (JDK 21+) so the Event Dispatch Thread never
+// blocks on a query. The pool bounds how many of them actually touch SQLite at once.
+// Table loads are timed as ui.tableLoad, and the wait for the EDT to pick up a
+// result as ui.edtDelay, which grows when something else is hogging the EDT.
+public class DataAccessExecutor {
+
+    private static final int BATCH_SIZE = 500;
+    private static final LatencyHistogram EDT_DELAY = Metrics.timer("ui.edtDelay");
+
+    @FunctionalInterface
+    public interface SqlTask<T> {
+        T run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowMapper {
+        Object[] map(ResultSet rs) throws SQLException;
+    }
+
+    // The statement a table load is reading from, so a newer load can stop it.
+    // sqlite3_interrupt hits whatever the connection is running, so cancel()
+    // only reaches the statement while the load still holds it.
+    private static final class RunningQuery {
+        private Statement statement;
+        private boolean cancelled;
+
+        synchronized void start(Statement statement) {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            this.statement = statement;
+        }
+
+        synchronized void finish() {
+            statement = null;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // The load still stops at its next batch
+                }
+            }
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Object, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    public DataAccessExecutor(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public <T> CompletableFuture<T> submit(SqlTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> runInto(task, future));
+        return future;
+    }
+
+    // Like submit, but cancels whatever was previously submitted under the same
+    // key, e.g. a report that is still loading when Apply Filter is hit again.
+    public <T> CompletableFuture<T> submitLatest(Object key, SqlTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<?> previous = latest.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        future.whenComplete((result, error) -> latest.remove(key, future));
+        executor.execute(() -> runInto(task, future));
+        return future;
+    }
+
+    private <T> void runInto(SqlTask<T> task, CompletableFuture<T> future) {
+        if (future.isCancelled()) {
+            return;
+        }
+        try {
+            future.complete(task.run());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    // Streams a query into a table model. Rows are handed to the EDT in batches so
+    // repaints stay cheap, and the model is only cleared once the first batch is
+    // ready. A newer load under the same key cancels the query, and batches it
+    // had already handed over are dropped on the EDT. Returns the number of rows loaded.
+    public CompletableFuture<Integer> loadInto(Object key, DefaultTableModel model, String sql,
+            List<Object> params, RowMapper mapper, JComponent indicator) {
+        setLoading(indicator, true);
+        AtomicReference<CompletableFuture<Integer>> self = new AtomicReference<>();
+        RunningQuery running = new RunningQuery();
+        CompletableFuture<Integer> future = submitLatest(key, () -> Metrics.time("ui.tableLoad", () -> {
+            int count = 0;
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            boolean first = true;
+            JfrEvents.TableLoad event = new JfrEvents.TableLoad();
+            event.begin();
+            try (Connection conn = pool.reader();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+                running.start(pstmt);
+                try {
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        batch.add(mapper.map(rs));
+                        count++;
+                        if (batch.size() == BATCH_SIZE) {
+                            checkCancelled(self.get());
+                            publish(self, model, batch, first);
+                            batch = new ArrayList<>(BATCH_SIZE);
+                            first = false;
+                        }
+                    }
+                } catch (SQLException e) {
+                    // An interrupted query is how a cancelled load ends
+                    checkCancelled(self.get());
+                    throw e;
+                } finally {
+                    running.finish();
+                }
+            }
+            checkCancelled(self.get());
+            publish(self, model, batch, first);
+            event.end();
+            if (event.shouldCommit()) {
+                event.sql = sql;
+                event.page = -1;
+                event.rows = count;
+                event.commit();
+            }
+            return count;
+        }));
+        self.set(future);
+        future.whenComplete((count, error) -> {
+            if (future.isCancelled()) {
+                running.cancel();
+            } else {
+                SwingUtilities.invokeLater(() -> setLoading(indicator, false));
+            }
+        });
+        return future;
+    }
+
+    private static void checkCancelled(CompletableFuture<?> future) {
+        if (future != null && future.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    // Checked again on the EDT: the load may have been superseded, and the newer
+    // one may have cleared the model, since this batch was queued
+    private static void publish(AtomicReference<? extends CompletableFuture<?>> load, DefaultTableModel model,
+            List<Object[]> rows, boolean clearFirst) {
+        SwingUtilities.invokeLater(() -> {
+            CompletableFuture<?> future = load.get();
+            if (future != null && future.isCancelled()) {
+                return;
+            }
+            if (clearFirst) {
+                model.setRowCount(0);
+            }
+            for (Object[] row : rows) {
+                model.addRow(row);
+            }
+        });
+    }
+
+    public static void setLoading(JComponent indicator, boolean loading) {
+        if (indicator != null) {
+            indicator.setVisible(loading);
+        }
+    }
+
+    public static JProgressBar createLoadingIndicator() {
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+        bar.setString("Loading...");
+        bar.setStringPainted(true);
+        bar.setVisible(false);
+        return bar;
+    }
+
+    // Completion callback that runs on the EDT and ignores superseded requests.
+    // Errors are unwrapped so callers see the original SQLException message.
+    public static <T> BiConsumer<T, Throwable> onEdt(BiConsumer<T, Throwable> callback) {
+        return (result, error) -> {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            long queued = System.nanoTime();
+            SwingUtilities.invokeLater(() -> {
+                EDT_DELAY.record(System.nanoTime() - queued);
+                callback.accept(result, cause);
+            });
+        };
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
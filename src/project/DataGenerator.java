@@ -0,0 +1,282 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.function.LongConsumer;
+
+// Fills Cards, Suppliers, SupplierPrices and Sales with synthetic data of a
+// chosen size. Sales are skewed the way a real shop's are: a Zipf distribution
+// makes a few cards hot, and sale dates follow a yearly season plus busier
+// weekends. The same seed always produces the same database.
+//
+// java project.DataGenerator <database> [cards=10000] [suppliers=50] [pricesPerCard=3]
+//     [sales=100000] [skew=1.1] [days=365] [seasonality=0.5] [stock=1000000] [seed=42]
+public class DataGenerator {
+
+    private static final int BATCH_SIZE = 5000;
+    private static final int COMMIT_EVERY = 500_000;
+    private static final String[] RARITIES = {"Common", "Uncommon", "Rare", "Mythic"};
+    private static final int CATEGORIES = 40;
+
+    public static final class Config {
+        public int cards = 10_000;
+        public int suppliers = 50;
+        public int pricesPerCard = 3;
+        public long sales = 100_000;
+        // Zipf exponent for which cards sell; 0 is uniform
+        public double skew = 1.1;
+        public int days = 365;
+        // 0 is flat; 1 means the peak day sells up to twice the yearly average
+        public double seasonality = 0.5;
+        public int initialStock = 1_000_000;
+        public long seed = 42;
+
+        // key=value arguments; unknown keys are rejected
+        public static Config parse(String[] args, int from) {
+            Config config = new Config();
+            for (int i = from; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Expected key=value, got " + args[i]);
+                }
+                String key = args[i].substring(0, eq);
+                String value = args[i].substring(eq + 1);
+                switch (key) {
+                    case "cards": config.cards = Integer.parseInt(value); break;
+                    case "suppliers": config.suppliers = Integer.parseInt(value); break;
+                    case "pricesPerCard": config.pricesPerCard = Integer.parseInt(value); break;
+                    case "sales": config.sales = Long.parseLong(value); break;
+                    case "skew": config.skew = Double.parseDouble(value); break;
+                    case "days": config.days = Integer.parseInt(value); break;
+                    case "seasonality": config.seasonality = Double.parseDouble(value); break;
+                    case "stock": config.initialStock = Integer.parseInt(value); break;
+                    case "seed": config.seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + key);
+                }
+            }
+            return config;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("cards=%d suppliers=%d pricesPerCard=%d sales=%d skew=%.2f days=%d "
+                    + "seasonality=%.2f stock=%d seed=%d", cards, suppliers, pricesPerCard, sales, skew, days,
+                    seasonality, initialStock, seed);
+        }
+    }
+
+    // Draws card ids 1..n with Zipf popularity. Ranks are scattered over the id
+    // range so hot cards aren't simply the lowest ids.
+    public static final class CardPicker {
+        private final int cards;
+        private final double[] cdf;
+
+        public CardPicker(int cards, double skew) {
+            this.cards = cards;
+            this.cdf = new double[cards];
+            double sum = 0;
+            for (int rank = 0; rank < cards; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, skew);
+                cdf[rank] = sum;
+            }
+            for (int rank = 0; rank < cards; rank++) {
+                cdf[rank] /= sum;
+            }
+        }
+
+        public int next(SplittableRandom random) {
+            int rank = search(cdf, random.nextDouble());
+            // 2654435761 is prime, so this is a permutation of 0..cards-1
+            return 1 + (int) ((rank * 2654435761L) % cards);
+        }
+    }
+
+    // Draws days back from today, weighted by season and weekday
+    public static final class DatePicker {
+        private final LocalDate today;
+        private final double[] cdf;
+
+        public DatePicker(LocalDate today, int days, double seasonality) {
+            this.today = today;
+            this.cdf = new double[days];
+            double sum = 0;
+            for (int back = 0; back < days; back++) {
+                LocalDate date = today.minusDays(back);
+                // Peak in mid December, trough in mid June
+                double season = 1 + seasonality * Math.cos(2 * Math.PI * (date.getDayOfYear() - 350) / 365.0);
+                double weekday = date.getDayOfWeek().getValue() >= 6 ? 1.5 : 1.0;
+                sum += season * weekday;
+                cdf[back] = sum;
+            }
+            for (int back = 0; back < days; back++) {
+                cdf[back] /= sum;
+            }
+        }
+
+        public LocalDate next(SplittableRandom random) {
+            return today.minusDays(search(cdf, random.nextDouble()));
+        }
+    }
+
+    private static int search(double[] cdf, double u) {
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Appends to whatever is already there; card and supplier ids are assumed
+    // to start at 1, i.e. the tables should be empty. Reports sales written.
+    public static void generate(ConnectionPool pool, Config config, LongConsumer progress) throws SQLException {
+        SplittableRandom random = new SplittableRandom(config.seed);
+        try (Connection conn = pool.writer()) {
+            conn.setAutoCommit(false);
+            try {
+                insertSuppliers(conn, config);
+                insertCards(conn, config, random);
+                insertPrices(conn, config, random);
+                conn.commit();
+                insertSales(conn, config, random, progress);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+    }
+
+    private static void insertSuppliers(Connection conn, Config config) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO Suppliers(name, contact, email, phone) VALUES(?,?,?,?)")) {
+            for (int i = 1; i <= config.suppliers; i++) {
+                pstmt.setString(1, "Supplier " + i);
+                pstmt.setString(2, "Contact " + i);
+                pstmt.setString(3, "supplier" + i + "@example.com");
+                pstmt.setString(4, "555-" + (1000 + i));
+                pstmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void insertCards(Connection conn, Config config, SplittableRandom random) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO Cards(name, category, rarity, value, quantity) VALUES(?,?,?,?,?)")) {
+            for (int i = 1; i <= config.cards; i++) {
+                // Rarer cards are scarcer and worth more
+                int rarity = Math.min(RARITIES.length - 1, (int) (-Math.log(1 - random.nextDouble()) / 0.9));
+                pstmt.setString(1, "Card " + i);
+                pstmt.setString(2, "Set " + (1 + random.nextInt(CATEGORIES)));
+                pstmt.setString(3, RARITIES[rarity]);
+                pstmt.setDouble(4, Math.round((0.1 + random.nextDouble() * 5) * Math.pow(4, rarity) * 100) / 100.0);
+                pstmt.setInt(5, config.initialStock);
+                pstmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void insertPrices(Connection conn, Config config, SplittableRandom random) throws SQLException {
+        if (config.suppliers == 0 || config.pricesPerCard == 0) {
+            return;
+        }
+        int perCard = Math.min(config.pricesPerCard, config.suppliers);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO SupplierPrices(supplier_id, card_id, price, last_updated) " +
+                "VALUES(?,?,?,date('now')) ON CONFLICT(supplier_id, card_id) DO NOTHING")) {
+            int pending = 0;
+            for (int card = 1; card <= config.cards; card++) {
+                int first = random.nextInt(config.suppliers);
+                for (int k = 0; k < perCard; k++) {
+                    pstmt.setInt(1, 1 + (first + k) % config.suppliers);
+                    pstmt.setInt(2, card);
+                    pstmt.setDouble(3, Math.round((0.5 + random.nextDouble() * 20) * 100) / 100.0);
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void insertSales(Connection conn, Config config, SplittableRandom random, LongConsumer progress)
+            throws SQLException {
+        if (config.sales == 0 || config.cards == 0 || config.suppliers == 0) {
+            return;
+        }
+        CardPicker cards = new CardPicker(config.cards, config.skew);
+        DatePicker dates = new DatePicker(LocalDate.now(), config.days, config.seasonality);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO Sales(card_id, supplier_id, quantity, sale_date, sale_price) VALUES(?,?,?,?,?)")) {
+            for (long i = 1; i <= config.sales; i++) {
+                pstmt.setInt(1, cards.next(random));
+                pstmt.setInt(2, 1 + random.nextInt(config.suppliers));
+                pstmt.setInt(3, random.nextInt(10) == 0 ? 2 + random.nextInt(6) : 1);
+                pstmt.setString(4, dates.next(random).toString());
+                pstmt.setDouble(5, Math.round((0.5 + random.nextDouble() * 20) * 100) / 100.0);
+                pstmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                    if (progress != null) {
+                        progress.accept(i);
+                    }
+                }
+                if (i % COMMIT_EVERY == 0) {
+                    conn.commit();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: DataGenerator <database> [key=value ...]");
+            System.exit(2);
+        }
+        Config config = Config.parse(args, 1);
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + args[0], 1);
+        try {
+            try (Connection conn = pool.writer()) {
+                InventoryManagementSystem.createSchema(conn);
+            }
+            System.out.println("Generating " + config);
+            long start = System.nanoTime();
+            long every = Math.max(BATCH_SIZE, config.sales / 20 / BATCH_SIZE * BATCH_SIZE);
+            generate(pool, config, written -> {
+                if (written % every == 0) {
+                    System.out.printf("  %,d / %,d sales%n", written, config.sales);
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Done in %.1fs (%.0f sales/sec)%n", seconds, config.sales / seconds);
+        } finally {
+            pool.close();
+        }
+    }
+}
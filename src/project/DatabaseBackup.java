@@ -0,0 +1,318 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Online snapshots of the database while terminals keep selling. A snapshot is
+// VACUUM INTO from its own connection: under WAL that is a read transaction, so
+// writers carry on against the live file and the copy is consistent as of its
+// start. The copy isn't fsynced in one go (that stalls every other fsync on the
+// disk for tens of ms); it is checked with PRAGMA integrity_check and then
+// written to its final name in small steps, each forced to disk on its own.
+// Only verified snapshots get a final name; the oldest beyond keep are deleted.
+//
+// The application takes one every -Dinventory.backup.intervalMinutes (default
+// 60, 0 turns it off) and keeps -Dinventory.backup.keep (default 24) in
+// <db>-backups. Sales archives (SalesArchive) don't change once written and
+// are not included.
+//
+// Headless:
+//   java project.DatabaseBackup <database file> backup
+//   java project.DatabaseBackup <database file> list
+//   java project.DatabaseBackup <database file> restore <snapshot file>
+public class DatabaseBackup implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(DatabaseBackup.class.getName());
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int STEP_BYTES = 4 << 20;
+    private static final long STEP_PAUSE_MS = 10;
+
+    private final String url;
+    private final Path directory;
+    private final String prefix;
+    private final int keep;
+    private final AtomicLong snapshots = Metrics.counter("backup.snapshots");
+    private final AtomicLong failures = Metrics.counter("backup.failures");
+    private ScheduledExecutorService scheduler;
+
+    public DatabaseBackup(String url, Path directory, int keep) {
+        this.url = url;
+        this.directory = directory;
+        this.prefix = databaseFile(url).getFileName().toString().replaceFirst("\\.db$", "") + "-";
+        this.keep = keep;
+    }
+
+    public static DatabaseBackup fromSystemProperties(String url) {
+        return new DatabaseBackup(url, directoryFor(url), Integer.getInteger("inventory.backup.keep", 24));
+    }
+
+    private static Path databaseFile(String url) {
+        return Paths.get(url.replaceFirst("^jdbc:sqlite:", "")).toAbsolutePath();
+    }
+
+    // inventory.db -> inventory-backups, beside it
+    public static Path directoryFor(String url) {
+        Path db = databaseFile(url);
+        return db.resolveSibling(db.getFileName().toString().replaceFirst("\\.db$", "") + "-backups");
+    }
+
+    // Starts the schedule unless the interval is 0; the first snapshot is one interval away
+    public synchronized void start() {
+        long minutes = Long.getLong("inventory.backup.intervalMinutes", 60);
+        if (scheduler != null || minutes <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "database-backup");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        long intervalMillis = TimeUnit.MINUTES.toMillis(minutes);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                // Every terminal runs this schedule; one snapshot per interval is enough
+                if (newestAgeMillis() < intervalMillis / 2) {
+                    return;
+                }
+                Path file = snapshot();
+                LOG.info("Database snapshot written to " + file);
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Scheduled database snapshot failed", e);
+            }
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    // Writes, verifies and rotates one snapshot; returns its file
+    public synchronized Path snapshot() throws SQLException {
+        try {
+            return Metrics.time("backup.run", this::writeSnapshot);
+        } catch (SQLException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private Path writeSnapshot() throws SQLException {
+        String name = prefix + LocalDateTime.now().format(STAMP) + ".db";
+        Path file = directory.resolve(name);
+        Path vacuumed = directory.resolve(name + ".vacuum");
+        Path partial = directory.resolve(name + ".partial");
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(vacuumed);
+            try (Connection conn = DriverManager.getConnection(url);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 5000");
+                // Flushed step by step below instead
+                stmt.execute("PRAGMA synchronous = OFF");
+                try (PreparedStatement pstmt = conn.prepareStatement("VACUUM INTO ?")) {
+                    pstmt.setString(1, vacuumed.toString());
+                    pstmt.execute();
+                }
+            }
+            verify(vacuumed);
+            copyInSteps(vacuumed, partial);
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("Could not write snapshot " + file + ": " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(vacuumed);
+            deleteQuietly(partial);
+        }
+        snapshots.incrementAndGet();
+        rotate();
+        return file;
+    }
+
+    private static void copyInSteps(Path from, Path to) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(STEP_BYTES);
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+                out.force(false);
+                try {
+                    Thread.sleep(STEP_PAUSE_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing snapshot", e);
+                }
+            }
+            out.force(true);
+        }
+    }
+
+    // Throws unless PRAGMA integrity_check says "ok"
+    static void verify(Path file) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON");
+            ResultSet rs = stmt.executeQuery("PRAGMA integrity_check");
+            while (rs.next()) {
+                problems.add(rs.getString(1));
+            }
+        }
+        if (!problems.equals(List.of("ok"))) {
+            throw new SQLException("Integrity check failed for " + file + ": " + String.join("; ", problems));
+        }
+    }
+
+    // Verified snapshots, newest first
+    public List<Path> list() throws SQLException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*.db")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not list snapshots in " + directory, e);
+        }
+        // The timestamp in the name sorts the same as the time it was taken
+        files.sort((a, b) -> b.getFileName().toString().compareTo(a.getFileName().toString()));
+        return files;
+    }
+
+    private long newestAgeMillis() throws SQLException {
+        List<Path> files = list();
+        if (files.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(files.get(0)).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private void rotate() throws SQLException {
+        List<Path> files = list();
+        for (Path old : files.subList(Math.min(keep, files.size()), files.size())) {
+            deleteQuietly(old);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not delete " + file, e);
+        }
+    }
+
+    // Replaces the database with a snapshot. Every terminal must be closed:
+    // switching out of WAL mode only succeeds with no other connection open,
+    // and also folds the WAL into the file so nothing is left to replay over
+    // the restored copy. The replaced database is kept beside it.
+    public static Path restore(String url, Path snapshot) throws SQLException {
+        verify(snapshot);
+        Path db = databaseFile(url);
+        Path replaced = db.resolveSibling(db.getFileName() + ".before-restore-" + LocalDateTime.now().format(STAMP));
+        Path incoming = db.resolveSibling(db.getFileName() + ".restoring");
+        try {
+            if (Files.exists(db)) {
+                try (Connection conn = DriverManager.getConnection(url);
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("PRAGMA journal_mode = DELETE")) {
+                    if (!rs.next() || !rs.getString(1).equalsIgnoreCase("delete")) {
+                        throw new SQLException("Database is still in use; close every terminal before restoring");
+                    }
+                } catch (SQLException e) {
+                    if (StockReservation.isBusy(e)) {
+                        throw new SQLException("Database is still in use; close every terminal before restoring", e);
+                    }
+                    throw e;
+                }
+            }
+            Files.copy(snapshot, incoming, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(incoming, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            if (Files.exists(db)) {
+                Files.move(db, replaced);
+            }
+            Files.move(incoming, db, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("Could not restore " + snapshot + ": " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(incoming);
+        }
+        return Files.exists(replaced) ? replaced : null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 2 || (args[1].equals("restore") && args.length < 3)) {
+            System.err.println("Usage: DatabaseBackup <database file> backup|list|restore <snapshot file>");
+            System.exit(1);
+        }
+        String url = "jdbc:sqlite:" + args[0];
+        DatabaseBackup backup = fromSystemProperties(url);
+        switch (args[1]) {
+            case "backup":
+                long start = System.nanoTime();
+                Path file = backup.snapshot();
+                System.out.printf("Snapshot %s (%d bytes) verified in %d ms%n", file,
+                        file.toFile().length(), (System.nanoTime() - start) / 1_000_000);
+                break;
+            case "list":
+                for (Path snapshot : backup.list()) {
+                    System.out.printf("%s  %d bytes%n", snapshot, snapshot.toFile().length());
+                }
+                break;
+            case "restore":
+                Path replaced = restore(url, Paths.get(args[2]).toAbsolutePath());
+                System.out.println("Restored " + args[0] + " from " + args[2]
+                        + (replaced == null ? "" : "; previous database kept as " + replaced));
+                break;
+            default:
+                System.err.println("Unknown command: " + args[1]);
+                System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package project;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// Notices when the Event Dispatch Thread stops responding. A daemon thread posts
+// a no-op to the EDT every tick; if it hasn't run within the threshold, the
+// EDT's stack is captured, and once it runs an EdtStall event (and a warning)
+// records how long the UI was frozen and what it was doing.
+//
+// Threshold: -Dinventory.edtStallMillis (default 200)
+final class EdtWatchdog {
+
+    private static final Logger LOG = Logger.getLogger(EdtWatchdog.class.getName());
+    private static final long TICK_MS = 50;
+
+    private static Thread watchdog;
+
+    private EdtWatchdog() {
+    }
+
+    static synchronized void start() {
+        if (watchdog != null) {
+            return;
+        }
+        long thresholdNanos = Long.getLong("inventory.edtStallMillis", 200) * 1_000_000;
+        AtomicLong stalls = Metrics.counter("ui.edtStalls");
+        watchdog = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                long posted = System.nanoTime();
+                AtomicLong ran = new AtomicLong();
+                SwingUtilities.invokeLater(() -> ran.set(System.nanoTime()));
+                String stack = null;
+                JfrEvents.EdtStall event = new JfrEvents.EdtStall();
+                event.begin();
+                try {
+                    while (ran.get() == 0) {
+                        Thread.sleep(TICK_MS);
+                        if (stack == null && System.nanoTime() - posted > thresholdNanos) {
+                            stack = edtStack();
+                        }
+                    }
+                    long stalled = ran.get() - posted;
+                    if (stalled > thresholdNanos) {
+                        stalls.incrementAndGet();
+                        event.end();
+                        event.edtStack = stack;
+                        event.commit();
+                        LOG.warning(String.format("EDT stalled for %d ms%s", stalled / 1_000_000,
+                                stack == null ? "" : " in:\n" + stack));
+                    }
+                    Thread.sleep(TICK_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "edt-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    // The EDT is replaced after an uncaught exception, so look it up each time
+    private static String edtStack() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("AWT-EventQueue")) {
+                StringBuilder sb = new StringBuilder();
+                StackTraceElement[] frames = t.getStackTrace();
+                for (int i = 0; i < Math.min(frames.length, 30); i++) {
+                    sb.append("    at ").append(frames[i]).append('\n');
+                }
+                return sb.toString();
+            }
+        }
+        return null;
+    }
+}
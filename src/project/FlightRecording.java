@@ -0,0 +1,78 @@
+package project;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Starts and stops a Flight Recorder recording from inside the application, so
+// a profile can be captured on a shop terminal without jcmd or JMC. Uses the
+// JDK's "profile" settings plus the custom events in JfrEvents.
+//
+// -Dinventory.jfr=<file.jfr> starts recording at launch and writes on exit.
+final class FlightRecording {
+
+    private static Recording recording;
+
+    private FlightRecording() {
+    }
+
+    static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    // Recording goes to the file when stopped, or on exit if never stopped
+    static synchronized void start(Path file) throws IOException {
+        if (recording != null) {
+            return;
+        }
+        Configuration profile;
+        try {
+            profile = Configuration.getConfiguration("profile");
+        } catch (ParseException e) {
+            throw new IOException("Could not read the JFR profile settings", e);
+        }
+        Recording r = new Recording(profile);
+        r.setName("inventory");
+        r.enable(JfrEvents.SqlStatement.class).withStackTrace();
+        r.enable(JfrEvents.ConnectionWait.class).withThreshold(Duration.ofMillis(1));
+        r.enable(JfrEvents.BusyRetry.class);
+        r.enable(JfrEvents.TableLoad.class);
+        r.enable(JfrEvents.EdtStall.class);
+        r.setToDisk(true);
+        r.setDestination(file);
+        r.setDumpOnExit(true);
+        r.start();
+        recording = r;
+    }
+
+    // Returns the file written, or null if nothing was recording
+    static synchronized Path stop() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path file = recording.getDestination();
+        recording.stop();
+        recording.close();
+        recording = null;
+        return file;
+    }
+
+    static Path defaultFile() {
+        return Paths.get("inventory-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                + ".jfr").toAbsolutePath();
+    }
+
+    static void startFromSystemProperty() throws IOException {
+        String file = System.getProperty("inventory.jfr");
+        if (file != null && !file.isEmpty()) {
+            start(Paths.get(file).toAbsolutePath());
+        }
+    }
+}
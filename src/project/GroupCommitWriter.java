@@ -0,0 +1,276 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Group commit for small writes such as sales and prices. One writer thread
+// takes whatever writes arrive within lingerMillis (up to maxBatch) and runs
+// them in a single transaction, so a burst pays for one WAL sync instead of
+// one each. Every write runs under its own savepoint: one that fails (out of
+// stock, say) is rolled back and reported alone while the rest commit.
+//
+// Durability.COMMIT completes each future once its batch has committed.
+// Durability.ENQUEUE completes it as soon as the write is queued; a write that
+// later fails is only logged and counted in groupCommit.lostWrites.
+//
+// -Dinventory.groupCommit=commit|enqueue turns it on for the application,
+// tuned by -Dinventory.groupCommit.lingerMillis and .maxBatch.
+public class GroupCommitWriter implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(GroupCommitWriter.class.getName());
+    private static final int MAX_ATTEMPTS = 6;
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    public enum Durability {
+        COMMIT,
+        ENQUEUE
+    }
+
+    @FunctionalInterface
+    public interface Write<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Pending<T> {
+        final Write<T> write;
+        final CompletableFuture<T> future;
+        final long enqueued = System.nanoTime();
+        T result;
+        Exception error;
+
+        Pending(Write<T> write, CompletableFuture<T> future) {
+            this.write = write;
+            this.future = future;
+        }
+
+        // Busy errors abort the whole batch so it can be retried; anything
+        // else only undoes this write
+        void apply(Connection conn) throws SQLException {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                result = write.apply(conn);
+                error = null;
+            } catch (SQLException e) {
+                if (StockReservation.isBusy(e)) {
+                    throw e;
+                }
+                conn.rollback(savepoint);
+                error = e;
+            } catch (RuntimeException e) {
+                conn.rollback(savepoint);
+                error = e;
+            }
+            conn.releaseSavepoint(savepoint);
+        }
+    }
+
+    private static final Pending<Void> STOP = new Pending<>(conn -> null, null);
+
+    private final ConnectionPool pool;
+    private final Durability durability;
+    private final long lingerNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending<?>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // Held shared while a write is checked and queued, exclusively to close,
+    // so nothing is queued behind STOP where the writer would never see it
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final LatencyHistogram commitTimer = Metrics.timer("groupCommit.commit");
+    private final LatencyHistogram latencyTimer = Metrics.timer("groupCommit.latency");
+    private final AtomicLong batches = Metrics.counter("groupCommit.batches");
+    private final AtomicLong writes = Metrics.counter("groupCommit.writes");
+    private final AtomicLong failedWrites = Metrics.counter("groupCommit.failedWrites");
+    private final AtomicLong lostWrites = Metrics.counter("groupCommit.lostWrites");
+
+    public GroupCommitWriter(ConnectionPool pool, Durability durability, long lingerMillis, int maxBatch) {
+        this.pool = pool;
+        this.durability = durability;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxBatch = maxBatch;
+        Metrics.gauge("groupCommit.queueDepth", queue::size);
+        // Batch sizes are counts, so they come from the counters rather than a timer
+        Metrics.gauge("groupCommit.batchSize.mean",
+                () -> batches.get() == 0 ? 0 : (double) writes.get() / batches.get());
+        Metrics.gauge("groupCommit.batchSize.max", maxBatchSize::get);
+        writer = new Thread(this::run, "group-commit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Null unless -Dinventory.groupCommit is set
+    public static GroupCommitWriter fromSystemProperties(ConnectionPool pool) {
+        String mode = System.getProperty("inventory.groupCommit");
+        if (mode == null || mode.isEmpty()) {
+            return null;
+        }
+        return new GroupCommitWriter(pool, Durability.valueOf(mode.toUpperCase(Locale.ROOT)),
+                Long.getLong("inventory.groupCommit.lingerMillis", 2),
+                Integer.getInteger("inventory.groupCommit.maxBatch", 256));
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    // Queues the write, blocking while the queue is full; fails once closed
+    public <T> CompletableFuture<T> submit(Write<T> write) throws SQLException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("Group commit writer is closed");
+            }
+            queue.put(new Pending<>(write, durability == Durability.COMMIT ? future : null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while queueing a write", e);
+        } finally {
+            closing.readLock().unlock();
+        }
+        if (durability == Durability.ENQUEUE) {
+            future.complete(null);
+        }
+        return future;
+    }
+
+    // submit() and wait; null under Durability.ENQUEUE
+    public <T> T execute(Write<T> write) throws SQLException {
+        try {
+            return submit(write).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Pending<?>> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Pending<?> next = queue.take();
+                long deadline = System.nanoTime() + lingerNanos;
+                while (next != null) {
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                    if (batch.size() == maxBatch) {
+                        break;
+                    }
+                    long left = deadline - System.nanoTime();
+                    next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (stopping) {
+                queue.drainTo(batch);
+                batch.remove(STOP);
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending<?>> batch) {
+        long start = System.nanoTime();
+        SQLException failure = null;
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = pool.writer()) {
+                conn.setAutoCommit(false);
+                try {
+                    for (Pending<?> pending : batch) {
+                        pending.apply(conn);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                break;
+            } catch (SQLException e) {
+                if (!StockReservation.isBusy(e) || attempt == MAX_ATTEMPTS) {
+                    failure = e;
+                    break;
+                }
+                try {
+                    StockReservation.backoff(attempt);
+                } catch (SQLException interrupted) {
+                    failure = interrupted;
+                    break;
+                }
+            }
+        }
+        long end = System.nanoTime();
+        commitTimer.record(end - start);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        batches.incrementAndGet();
+        writes.addAndGet(batch.size());
+        for (Pending<?> pending : batch) {
+            latencyTimer.record(end - pending.enqueued);
+            finish(pending, failure);
+        }
+    }
+
+    private <T> void finish(Pending<T> pending, SQLException batchFailure) {
+        Exception error = batchFailure != null ? batchFailure : pending.error;
+        if (error == null) {
+            if (pending.future != null) {
+                pending.future.complete(pending.result);
+            }
+            return;
+        }
+        failedWrites.incrementAndGet();
+        if (pending.future != null) {
+            pending.future.completeExceptionally(error);
+        } else {
+            lostWrites.incrementAndGet();
+            LOG.log(Level.WARNING, "Queued write failed after it was acknowledged", error);
+        }
+    }
+
+    // Commits everything already queued, then stops the writer thread
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            queue.put(STOP);
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
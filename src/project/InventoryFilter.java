@@ -0,0 +1,79 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Filters of the Manage Inventory grid, turned into SQL conditions over Cards.
+// Each condition lines up with an index from migration 11 so the filtered
+// pages are read by seeking rather than scanning the whole table.
+public class InventoryFilter {
+
+    public static final String ANY = "All";
+
+    private final String text;
+    private final String category;
+    private final String rarity;
+    private final Double minValue;
+    private final Double maxValue;
+    private final Integer lowStockThreshold;
+
+    // Empty strings, ANY and null mean "no filter"
+    public InventoryFilter(String text, String category, String rarity,
+            Double minValue, Double maxValue, Integer lowStockThreshold) {
+        String expression = text == null ? "" : CardSearch.toMatchExpression(text);
+        this.text = expression.isEmpty() ? null : expression;
+        this.category = category == null || category.equals(ANY) ? null : category;
+        this.rarity = rarity == null || rarity.equals(ANY) ? null : rarity;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    // Conditions joined with AND, without the WHERE keyword; empty when unfiltered
+    public String conditions() {
+        List<String> conditions = new ArrayList<>();
+        if (text != null) {
+            conditions.add("card_id IN (SELECT rowid FROM CardSearch WHERE CardSearch MATCH ?)");
+        }
+        if (category != null) {
+            conditions.add("category = ?");
+        }
+        if (rarity != null) {
+            conditions.add("rarity = ?");
+        }
+        if (minValue != null) {
+            conditions.add("value >= ?");
+        }
+        if (maxValue != null) {
+            conditions.add("value <= ?");
+        }
+        if (lowStockThreshold != null) {
+            conditions.add("quantity <= ?");
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    public List<Object> params() {
+        List<Object> params = new ArrayList<>();
+        if (text != null) {
+            params.add(text);
+        }
+        if (category != null) {
+            params.add(category);
+        }
+        if (rarity != null) {
+            params.add(rarity);
+        }
+        if (minValue != null) {
+            params.add(minValue);
+        }
+        if (maxValue != null) {
+            params.add(maxValue);
+        }
+        if (lowStockThreshold != null) {
+            params.add(lowStockThreshold);
+        }
+        return Collections.unmodifiableList(params);
+    }
+}
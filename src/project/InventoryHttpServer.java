@@ -0,0 +1,652 @@
+package project;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// JSON API over InventoryService on the JDK's built-in HTTP server. Every
+// exchange runs on its own virtual thread, so thousands of clients can wait on
+// the database at once while the pool decides how many actually touch SQLite.
+//
+//   GET    /api/cards?after=&limit=&q=&category=&rarity=&minValue=&maxValue=&lowStock=
+//   POST   /api/cards                    GET/PUT/DELETE /api/cards/{id}
+//   GET    /api/cards/{id}/prices        POST /api/cards/{id}/prices {supplierId, price}
+//   GET    /api/suppliers?after=&limit=  POST /api/suppliers
+//   GET/PUT/DELETE /api/suppliers/{id}
+//   GET    /api/sales?before=&limit=&supplier=&from=&to=
+//   POST   /api/sales {cardId, supplierId, quantity, price}   DELETE /api/sales/{id}
+//          (202 without an id when group commit acknowledges on enqueue)
+//   GET    /api/reports/summary?supplier=&from=&to=
+//   GET    /api/reports/breakdown?by=supplier|card|day&supplier=&from=&to=
+//   GET    /api/reports/analytics?by=rarity,month&rank=revenue&top=&supplier=&category=&rarity=&from=&to=
+//   GET    /metrics                      Prometheus text format
+//
+// Lists are keyset paginated: pass the returned "next" as after (or before).
+public class InventoryHttpServer {
+
+    private static final Logger LOG = Logger.getLogger(InventoryHttpServer.class.getName());
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int BACKLOG = 1024;
+    private static final int SQLITE_CONSTRAINT = 19;
+    private static final LatencyHistogram REQUEST_TIMER = Metrics.timer("http.request");
+
+    private final InventoryService service;
+    private final SalesArchive archive;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public InventoryHttpServer(InventoryService service, SalesArchive archive, int port) throws IOException {
+        this.service = service;
+        this.archive = archive;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.createContext("/metrics", InventoryHttpServer::metrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // An error the client caused, with the status to send back
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    // Prometheus scrape target
+    private static void metrics(HttpExchange exchange) throws IOException {
+        byte[] bytes = Metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = route(exchange);
+        } catch (HttpError e) {
+            response = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (SQLException e) {
+            response = error(status(e), e.getMessage());
+            if (response.status == 500) {
+                LOG.log(Level.WARNING, "Request failed: " + exchange.getRequestURI(), e);
+            }
+        } catch (Throwable e) {
+            // Errors too, so the exchange is always answered
+            LOG.log(Level.WARNING, "Request failed: " + exchange.getRequestURI(), e);
+            response = error(500, "Internal error");
+        }
+        send(exchange, response);
+        REQUEST_TIMER.record(System.nanoTime() - start);
+        Metrics.counter("http.responses." + response.status / 100 + "xx").incrementAndGet();
+    }
+
+    // Validation is ours (SQLDataException); conflicts are our stock and existence
+    // checks or a SQLite constraint; a pool timeout or a busy database is temporary
+    private static int status(SQLException e) {
+        if (e instanceof SQLDataException) {
+            return 400;
+        }
+        if (e instanceof SQLIntegrityConstraintViolationException || (e.getErrorCode() & 0xff) == SQLITE_CONSTRAINT) {
+            return 409;
+        }
+        if (e instanceof SQLTransientException || StockReservation.isBusy(e)) {
+            return 503;
+        }
+        return 500;
+    }
+
+    private Response route(HttpExchange exchange) throws IOException, SQLException {
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        String method = exchange.getRequestMethod();
+        Map<String, String> query = queryParams(exchange.getRequestURI().getRawQuery());
+        switch (path[0]) {
+            case "cards":
+                if (path.length == 1) {
+                    return method.equals("POST") ? createCard(readBody(exchange)) : listCards(query, method);
+                }
+                int cardId = parseId(path[1]);
+                if (path.length == 2) {
+                    return card(method, cardId, exchange);
+                }
+                if (path.length == 3 && path[2].equals("prices")) {
+                    return prices(method, cardId, exchange);
+                }
+                break;
+            case "suppliers":
+                if (path.length == 1) {
+                    return method.equals("POST") ? createSupplier(readBody(exchange)) : listSuppliers(query, method);
+                }
+                if (path.length == 2) {
+                    return supplier(method, parseId(path[1]), exchange);
+                }
+                break;
+            case "sales":
+                if (path.length == 1) {
+                    return method.equals("POST") ? createSale(readBody(exchange)) : listSales(query, method);
+                }
+                if (path.length == 2) {
+                    requireMethod(method, "DELETE");
+                    return deleted(service.removeSale(parseId(path[1])), "Sale");
+                }
+                break;
+            case "reports":
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    return report(path[1], query);
+                }
+                break;
+            default:
+                break;
+        }
+        throw new HttpError(404, "No such resource");
+    }
+
+    // Cards
+
+    private Response listCards(Map<String, String> query, String method) throws SQLException {
+        requireMethod(method, "GET");
+        InventoryFilter filter = new InventoryFilter(query.get("q"), query.get("category"), query.get("rarity"),
+                optDouble(query, "minValue"), optDouble(query, "maxValue"), optInt(query, "lowStock"));
+        int limit = limit(query);
+        List<Object> items = new ArrayList<>();
+        long next = -1;
+        for (InventoryService.Card card : service.listCards(filter, optLong(query, "after", 0), limit)) {
+            items.add(toJson(card));
+            next = card.id;
+        }
+        return page(items, limit, next);
+    }
+
+    private Response card(String method, int cardId, HttpExchange exchange) throws IOException, SQLException {
+        switch (method) {
+            case "GET":
+                return new Response(200, toJson(found(service.getCard(cardId), "Card")));
+            case "PUT":
+                // Only the fields in the body are written; the rest, stock
+                // included, keep whatever value they have when the update commits
+                Map<String, Object> body = readBody(exchange);
+                return new Response(200, toJson(found(service.patchCard(cardId,
+                        optString(body, "name", null),
+                        optString(body, "category", null),
+                        optString(body, "rarity", null),
+                        body.containsKey("value") ? requireNumber(body, "value") : null,
+                        body.containsKey("quantity") ? requireInteger(body, "quantity") : null), "Card")));
+            case "DELETE":
+                return deleted(service.deleteCard(cardId), "Card");
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Response createCard(Map<String, Object> body) throws SQLException {
+        String name = requireString(body, "name");
+        String category = optString(body, "category", "");
+        String rarity = optString(body, "rarity", "");
+        double value = optNumber(body, "value", 0);
+        int quantity = optInteger(body, "quantity", 0);
+        int cardId = service.addCard(name, category, rarity, value, quantity);
+        return new Response(201, toJson(new InventoryService.Card(cardId, name, category, rarity, value, quantity)));
+    }
+
+    private Response prices(String method, int cardId, HttpExchange exchange) throws IOException, SQLException {
+        if (method.equals("POST")) {
+            Map<String, Object> body = readBody(exchange);
+            service.recordPrice(requireInteger(body, "supplierId"), cardId, requireNumber(body, "price"));
+            return new Response(201, Map.of("recorded", true));
+        }
+        requireMethod(method, "GET");
+        List<Object> items = new ArrayList<>();
+        for (InventoryService.SupplierPrice price : service.comparePrices(cardId)) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("supplierId", price.supplierId);
+            json.put("supplierName", price.supplierName);
+            json.put("price", price.price);
+            json.put("lastUpdated", price.lastUpdated);
+            items.add(json);
+        }
+        return new Response(200, Map.of("items", items));
+    }
+
+    // Suppliers
+
+    private Response listSuppliers(Map<String, String> query, String method) throws SQLException {
+        requireMethod(method, "GET");
+        int limit = limit(query);
+        List<Object> items = new ArrayList<>();
+        long next = -1;
+        for (InventoryService.Supplier supplier : service.listSuppliers(optLong(query, "after", 0), limit)) {
+            items.add(toJson(supplier));
+            next = supplier.id;
+        }
+        return page(items, limit, next);
+    }
+
+    private Response supplier(String method, int supplierId, HttpExchange exchange) throws IOException, SQLException {
+        switch (method) {
+            case "GET":
+                return new Response(200, toJson(found(service.getSupplier(supplierId), "Supplier")));
+            case "PUT":
+                Map<String, Object> body = readBody(exchange);
+                InventoryService.Supplier current = found(service.getSupplier(supplierId), "Supplier");
+                InventoryService.Supplier updated = new InventoryService.Supplier(supplierId,
+                        optString(body, "name", current.name),
+                        optString(body, "contact", current.contact),
+                        optString(body, "email", current.email),
+                        optString(body, "phone", current.phone));
+                found(service.updateSupplier(updated) ? updated : null, "Supplier");
+                return new Response(200, toJson(updated));
+            case "DELETE":
+                return deleted(service.deleteSupplier(supplierId), "Supplier");
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Response createSupplier(Map<String, Object> body) throws SQLException {
+        String name = requireString(body, "name");
+        String contact = optString(body, "contact", "");
+        String email = optString(body, "email", "");
+        String phone = optString(body, "phone", "");
+        int supplierId = service.addSupplier(name, contact, email, phone);
+        return new Response(201, toJson(new InventoryService.Supplier(supplierId, name, contact, email, phone)));
+    }
+
+    // Sales
+
+    private Response listSales(Map<String, String> query, String method) throws SQLException {
+        requireMethod(method, "GET");
+        int limit = limit(query);
+        List<Object> items = new ArrayList<>();
+        long next = -1;
+        for (InventoryService.Sale sale : service.listSales(reportQuery(query),
+                optLong(query, "before", Long.MAX_VALUE), limit)) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", sale.id);
+            json.put("cardId", sale.cardId);
+            json.put("cardName", sale.cardName);
+            json.put("supplierId", sale.supplierId);
+            json.put("supplierName", sale.supplierName);
+            json.put("quantity", sale.quantity);
+            json.put("saleDate", sale.saleDate);
+            json.put("salePrice", sale.salePrice);
+            items.add(json);
+            next = sale.id;
+        }
+        return page(items, limit, next);
+    }
+
+    private Response createSale(Map<String, Object> body) throws SQLException {
+        long saleId = service.recordSale(requireInteger(body, "cardId"), requireInteger(body, "supplierId"),
+                requireInteger(body, "quantity"), requireNumber(body, "price"));
+        if (saleId < 0) {
+            return new Response(202, Map.of("queued", true));  // Group commit acknowledging on enqueue
+        }
+        return new Response(201, Map.of("id", saleId));
+    }
+
+    // Reports
+
+    private Response report(String name, Map<String, String> query) throws SQLException {
+        SalesReportQuery reportQuery = reportQuery(query);
+        if (name.equals("summary")) {
+            SalesReportEngine.Summary summary = service.summarize(reportQuery);
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("saleCount", summary.saleCount);
+            json.put("quantity", summary.quantity);
+            json.put("revenue", summary.revenue);
+            return new Response(200, json);
+        }
+        if (name.equals("breakdown")) {
+            SalesReportEngine.Breakdown breakdown;
+            try {
+                breakdown = SalesReportEngine.Breakdown.valueOf(
+                        query.getOrDefault("by", "supplier").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("by must be supplier, card or day");
+            }
+            List<Object> items = new ArrayList<>();
+            for (Object[] row : service.breakdown(reportQuery, breakdown)) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("label", row[0]);
+                json.put("saleCount", row[1]);
+                json.put("quantity", row[2]);
+                json.put("revenue", row[3]);
+                items.add(json);
+            }
+            return new Response(200, Map.of("by", breakdown.name().toLowerCase(Locale.ROOT), "items", items));
+        }
+        if (name.equals("analytics")) {
+            return analytics(query);
+        }
+        throw new HttpError(404, "No such report");
+    }
+
+    private Response analytics(Map<String, String> query) throws SQLException {
+        List<SalesAnalytics.Dimension> groupBy = new ArrayList<>();
+        SalesAnalytics.Measure rank;
+        try {
+            for (String by : query.getOrDefault("by", "").split(",")) {
+                if (!by.isBlank()) {
+                    groupBy.add(SalesAnalytics.Dimension.valueOf(by.trim().toUpperCase(Locale.ROOT)));
+                }
+            }
+            rank = SalesAnalytics.Measure.valueOf(query.getOrDefault("rank", "revenue").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("by takes category, rarity, supplier, card, year, month or day; "
+                    + "rank takes revenue, quantity or sales");
+        }
+        int top = (int) optLong(query, "top", 0);
+        SalesAnalytics.Result result = service.analyze(new SalesAnalytics.Query(groupBy, rank, top,
+                query.get("from"), query.get("to"), query.get("supplier"), query.get("category"), query.get("rarity")));
+        List<Object> items = new ArrayList<>();
+        for (Object[] row : result.rows) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                json.put(groupBy.get(i).name().toLowerCase(Locale.ROOT), row[i]);
+            }
+            json.put("saleCount", row[groupBy.size()]);
+            json.put("quantity", row[groupBy.size() + 1]);
+            json.put("revenue", row[groupBy.size() + 2]);
+            items.add(json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("salesScanned", result.salesScanned);
+        json.put("millis", result.nanos / 1_000_000.0);
+        json.put("items", items);
+        return new Response(200, json);
+    }
+
+    // Reaches into the archived years the date range covers, as the Swing reports do
+    private SalesReportQuery reportQuery(Map<String, String> query) {
+        return archive.covering(new SalesReportQuery(query.get("supplier"), query.get("from"), query.get("to")));
+    }
+
+    // JSON shapes
+
+    private static Map<String, Object> toJson(InventoryService.Card card) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", card.id);
+        json.put("name", card.name);
+        json.put("category", card.category);
+        json.put("rarity", card.rarity);
+        json.put("value", card.value);
+        json.put("quantity", card.quantity);
+        return json;
+    }
+
+    private static Map<String, Object> toJson(InventoryService.Supplier supplier) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", supplier.id);
+        json.put("name", supplier.name);
+        json.put("contact", supplier.contact);
+        json.put("email", supplier.email);
+        json.put("phone", supplier.phone);
+        return json;
+    }
+
+    // A full page means there may be more; next is the cursor for the following page
+    private static Response page(List<Object> items, int limit, long next) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("items", items);
+        json.put("next", items.size() == limit ? next : null);
+        return new Response(200, json);
+    }
+
+    private static Response deleted(boolean deleted, String what) {
+        if (!deleted) {
+            throw new HttpError(404, what + " not found");
+        }
+        return new Response(204, null);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", message == null ? "Error" : message));
+    }
+
+    private static <T> T found(T value, String what) {
+        if (value == null) {
+            throw new HttpError(404, what + " not found");
+        }
+        return value;
+    }
+
+    // Request parsing
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No such resource");
+        }
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static int limit(Map<String, String> query) {
+        long limit = optLong(query, "limit", DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return (int) limit;
+    }
+
+    private static long optLong(Map<String, String> query, String name, long defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    private static Integer optInt(Map<String, String> query, String name) {
+        return query.containsKey(name) ? (int) optLong(query, name, 0) : null;
+    }
+
+    private static Double optDouble(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body too large");
+        }
+        Object body = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        if (!(body instanceof Map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    private static String requireString(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String) || ((String) value).trim().isEmpty()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return (String) value;
+    }
+
+    private static String optString(Map<String, Object> body, String name, String defaultValue) {
+        Object value = body.get(name);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    private static double requireNumber(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static double optNumber(Map<String, Object> body, String name, double defaultValue) {
+        return body.containsKey(name) ? requireNumber(body, name) : defaultValue;
+    }
+
+    // Ids and quantities: 1.9 is rejected rather than truncated to 1
+    private static int requireInteger(Map<String, Object> body, String name) {
+        double value = requireNumber(body, name);
+        if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+        return (int) value;
+    }
+
+    private static int optInteger(Map<String, Object> body, String name, int defaultValue) {
+        return body.containsKey(name) ? requireInteger(body, name) : defaultValue;
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        try (exchange) {
+            if (response.body == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            byte[] bytes = Json.write(response.body).getBytes(StandardCharsets.UTF_8);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Usage: InventoryHttpServer [port] [database]
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String db = args.length > 1 ? args[1] : "inventory.db";
+        int readers = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + db, readers);
+        Metrics.install();
+        Metrics.gauge("pool.active", pool::getActiveCount);
+        try (Connection conn = pool.writer()) {
+            InventoryManagementSystem.createSchema(conn);
+        }
+        // Readers attach the archived sales years, so reports and analytics see them
+        SalesArchive archive = new SalesArchive(pool, SalesArchive.directoryFor("jdbc:sqlite:" + db));
+        archive.attach();
+        InventoryService service = new InventoryService(pool, new ReferenceDataCache(pool, 250_000));
+        GroupCommitWriter writes = GroupCommitWriter.fromSystemProperties(pool);
+        service.setGroupCommit(writes);
+        InventoryHttpServer server = new InventoryHttpServer(service, archive, port);
+        // No ChangeFeed here, so the server prunes the ChangeLog on its own schedule
+        ScheduledExecutorService pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "changelog-prune");
+            t.setDaemon(true);
+            return t;
+        });
+        if (ChangeTracker.PRUNE_MINUTES > 0) {
+            pruner.scheduleWithFixedDelay(() -> ChangeTracker.prune(pool),
+                    0, ChangeTracker.PRUNE_MINUTES, TimeUnit.MINUTES);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pruner.shutdownNow();
+            server.stop();
+            if (writes != null) {
+                writes.close();
+            }
+            pool.close();
+        }));
+        server.start();
+        System.out.println("Serving " + db + " on http://localhost:" + server.getPort() + "/api/ with "
+                + readers + " reader connections");
+    }
+}
@@ -1,75 +1,220 @@
 package project;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableColumn;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class InventoryManagementSystem {
 
 	private static final String DB_URL = "jdbc:sqlite:inventory.db";
 	private static final Color BACKGROUND_COLOR = new Color(240, 240, 240);
 	private static final Color PRIMARY_COLOR = new Color(51, 153, 255);
-    private static Connection connect() {
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(DB_URL);
-            configureDatabaseConnection(conn);
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Database Connection Failed: " + e.getMessage());
-        }
-        return conn;
-    }
-
+	private static final ConnectionPool POOL = new ConnectionPool(DB_URL, 4);
+	private static final DataAccessExecutor DATA = new DataAccessExecutor(POOL);
+	private static final OrderService ORDERS = new OrderService(POOL);
+	private static final ReferenceDataCache CACHE = new ReferenceDataCache(POOL, 250_000);
+	private static final CardSearch SEARCH = new CardSearch(POOL);
+	private static final InventoryService SERVICE = new InventoryService(POOL, CACHE);
+	private static final GroupCommitWriter WRITES = GroupCommitWriter.fromSystemProperties(POOL);
+	private static final SalesArchive ARCHIVE = new SalesArchive(POOL, SalesArchive.directoryFor(DB_URL));
+	private static final DatabaseBackup BACKUP = DatabaseBackup.fromSystemProperties(DB_URL);
+	private static final ChangeFeed FEED = new ChangeFeed(DB_URL, Long.getLong("inventory.changePollMillis", 500));
+
+    // Completes once the schema is checked and migrated; see whenDatabaseReady
+    private static CompletableFuture<Void> databaseReady;
+
+    // Startup shows the main window first: the EDT only sets the look and feel
+    // and builds the frame, while schema checks, migrations and metrics setup
+    // run on the data executor at the same time. Cache warming and the change
+    // feed and scheduled backups start once the database is ready. Timings go to StartupTimer.
     public static void main(String[] args) {
+        StartupTimer.mark(StartupTimer.MAIN);
+        databaseReady = DATA.submit(() -> {
+            initializeDatabase();
+            return null;
+        });
+        SwingUtilities.invokeLater(() -> {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            createMainWindow();
+            // Taken once the EDT gets back to the queue, behind the frame's first paint
+            SwingUtilities.invokeLater(() -> StartupTimer.mark(StartupTimer.FIRST_FRAME));
+        });
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            FEED.close();
+            BACKUP.close();
+            DATA.shutdown();
+            if (WRITES != null) {
+                WRITES.close();
+            }
+            POOL.close();
+        }));
+        SERVICE.setGroupCommit(WRITES);
+        EdtWatchdog.start();
         try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
+            FlightRecording.startFromSystemProperty();
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
-        SwingUtilities.invokeLater(() -> {
-            try {
-                initializeDatabase();
-                createMainWindow();
-            } catch (Exception e) {
+        databaseReady.whenComplete(DataAccessExecutor.onEdt((ignored, e) -> {
+            if (e != null) {
                 e.printStackTrace();
-                JOptionPane.showMessageDialog(null, "Error starting application: " + e.getMessage());
+                StartupTimer.failed(e);
+                JOptionPane.showMessageDialog(null, "Failed to Initialize Database: " + e.getMessage());
+                return;
             }
+            StartupTimer.mark(StartupTimer.DATABASE_READY);
+            warmCache();
+            // Cards and suppliers added or renamed on other terminals reach the dropdowns
+            FEED.subscribe("Cards", InventoryManagementSystem::refreshCache);
+            FEED.subscribe("Suppliers", InventoryManagementSystem::refreshCache);
+            FEED.pruneWith(POOL);
+            FEED.start();
+            BACKUP.start();
+        }));
+        // The platform MBean server is slow to create and nothing needs it yet
+        DATA.submit(() -> {
+            Metrics.install();
+            Metrics.gauge("pool.active", POOL::getActiveCount);
+            Metrics.gauge("cache.hits", CACHE::getHits);
+            Metrics.gauge("cache.misses", CACHE::getMisses);
+            return null;
         });
     }
 
+    // Main window buttons work from the first frame; what they open waits for
+    // the schema check if it is still running
+    private static void whenDatabaseReady(Runnable action) {
+        if (databaseReady.isDone() && !databaseReady.isCompletedExceptionally()) {
+            action.run();
+            return;
+        }
+        databaseReady.whenComplete(DataAccessExecutor.onEdt((ignored, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Database is not available: " + e.getMessage());
+                return;
+            }
+            action.run();
+        }));
+    }
+
     private static void createMainWindow() {
         JFrame frame = new JFrame("Inventory Management System");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(400, 400);
-        frame.setLayout(new GridLayout(4, 1));
+        frame.setLayout(new GridLayout(6, 1));
 
         JButton manageInventoryButton = new JButton("Manage Inventory");
         JButton manageSuppliersButton = new JButton("Manage Suppliers");
         JButton manageSalesButton = new JButton("Manage Sales");
         JButton viewReportButton = new JButton("View Sales Report");
+        JButton importButton = new JButton("Import CSV");
+        JButton profileButton = new JButton(FlightRecording.isRecording() ? "Stop Profiling" : "Start Profiling");
 
         frame.add(manageInventoryButton);
         frame.add(manageSuppliersButton);
         frame.add(manageSalesButton);
         frame.add(viewReportButton);
+        frame.add(importButton);
+        frame.add(profileButton);
 
-        manageInventoryButton.addActionListener(e -> openInventoryWindow());
-        manageSuppliersButton.addActionListener(e -> openSuppliersWindow());
-        manageSalesButton.addActionListener(e -> openSalesWindow());
-        viewReportButton.addActionListener(e -> viewSalesReport());
+        manageInventoryButton.addActionListener(e -> whenDatabaseReady(() -> openInventoryWindow()));
+        manageSuppliersButton.addActionListener(e -> whenDatabaseReady(() -> openSuppliersWindow()));
+        manageSalesButton.addActionListener(e -> whenDatabaseReady(() -> openSalesWindow()));
+        viewReportButton.addActionListener(e -> whenDatabaseReady(() -> viewSalesReport()));
+        importButton.addActionListener(e -> whenDatabaseReady(() -> importCsv(frame)));
+        profileButton.addActionListener(e -> toggleProfiling(frame, profileButton));
 
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
 
-    private static void initializeDatabase() {
+    // Flight Recorder capture an operator can start and stop from the main window
+    private static void toggleProfiling(JFrame frame, JButton button) {
+        try {
+            if (FlightRecording.isRecording()) {
+                Path file = FlightRecording.stop();
+                button.setText("Start Profiling");
+                JOptionPane.showMessageDialog(frame, "Profile saved to " + file);
+            } else {
+                FlightRecording.start(FlightRecording.defaultFile());
+                button.setText("Stop Profiling");
+            }
+        } catch (IOException | IllegalStateException e) {
+            JOptionPane.showMessageDialog(frame, "Error recording profile: " + e.getMessage());
+        }
+    }
+
+    // Runs onChange on the EDT whenever table changes, from this terminal or
+    // another one, for as long as the frame is open
+    private static void followChanges(JFrame frame, String table, Runnable onChange) {
+        ChangeFeed.Subscription subscription = FEED.subscribe(table, onChange);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                subscription.close();
+            }
+        });
+    }
+
+    // Fills the card/supplier lookup cache in the background
+    private static void warmCache() {
+        DATA.submit(() -> {
+            CACHE.warm();
+            return null;
+        }).whenComplete(DataAccessExecutor.onEdt((ignored, e) -> {
+            if (e != null) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    // Several feed notifications in a row collapse into the latest refresh
+    private static void refreshCache() {
+        DATA.submitLatest(CACHE, () -> {
+            CACHE.refreshChanges();
+            return null;
+        }).whenComplete(DataAccessExecutor.onEdt((ignored, e) -> {
+            if (e != null) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    // Off the EDT; failures are reported once the main window is up
+    private static void initializeDatabase() throws SQLException {
+        try (Connection conn = POOL.writer()) {
+            createSchema(conn);
+            ChangeTracker.prune(conn, ChangeTracker.KEEP);
+        }
+        ARCHIVE.attach();
+    }
+
+    // Shared with the headless tools, which open their own pool
+    static void createSchema(Connection conn) throws SQLException {
         // Create tables with correct structure
         String createCardsTable = "CREATE TABLE IF NOT EXISTS Cards (" +
                 "card_id INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -109,15 +254,60 @@ public class InventoryManagementSystem {
                 "FOREIGN KEY(card_id) REFERENCES Cards(card_id)" +
                 ");";
 
-        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+        try (Statement stmt = conn.createStatement()) {
             // Create tables if they don't exist
             stmt.execute(createCardsTable);
             stmt.execute(createSuppliersTable);
             stmt.execute(createSalesTable);
             stmt.execute(createSupplierPricesTable);
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to Initialize Database: " + e.getMessage());
         }
+
+        // Indexes and later schema changes
+        SchemaMigrations.migrate(conn);
+    }
+
+    // Bulk import of cards, suppliers or prices from a CSV file
+    private static void importCsv(JFrame parent) {
+        CsvImporter.Kind[] kinds = CsvImporter.Kind.values();
+        String[] labels = {"Cards", "Suppliers", "Supplier Prices"};
+        int choice = JOptionPane.showOptionDialog(parent, "What does the file contain?", "Import CSV",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, labels, labels[0]);
+        if (choice < 0) {
+            return;
+        }
+        CsvImporter.Kind kind = kinds[choice];
+
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        Path rejects = file.resolveSibling(file.getFileName() + ".rejects.csv");
+
+        ProgressMonitor monitor = new ProgressMonitor(parent, "Importing " + file.getFileName(), "", 0, 100);
+        DATA.submit(() -> {
+            try {
+                return new CsvImporter(POOL).importFile(kind, file, rejects, (rows, read, total) ->
+                        SwingUtilities.invokeLater(() -> {
+                            monitor.setNote(rows + " rows imported");
+                            monitor.setProgress(total == 0 ? 100 : (int) (read * 100 / total));
+                        }));
+            } catch (IOException e) {
+                throw new SQLException("Error reading file: " + e.getMessage(), e);
+            }
+        }).whenComplete(DataAccessExecutor.onEdt((result, e) -> {
+            monitor.close();
+            if (e != null) {
+                JOptionPane.showMessageDialog(parent, "Error Importing CSV: " + e.getMessage());
+                return;
+            }
+            warmCache();  // New cards and suppliers
+            String message = result.toString();
+            if (result.rejected > 0) {
+                message += "\nRejected rows were written to " + rejects;
+            }
+            JOptionPane.showMessageDialog(parent, message);
+        }));
     }
 
     // Existing Inventory Management Methods
@@ -127,16 +317,12 @@ public class InventoryManagementSystem {
         inventoryFrame.setSize(800, 600);
 
         JPanel panel = new JPanel(new BorderLayout());
-        DefaultTableModel model = new DefaultTableModel();
+        PagedTableModel model = createInventoryModel();
         JTable table = new JTable(model);
-        model.addColumn("Card ID");
-        model.addColumn("Name");
-        model.addColumn("Category");
-        model.addColumn("Rarity");
-        model.addColumn("Value");
-        model.addColumn("Quantity");
 
-        loadInventoryData(model);
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        model.setLoadingIndicator(loading);
+        model.refresh();
         JScrollPane scrollPane = new JScrollPane(table);
 
         JPanel buttonPanel = new JPanel();
@@ -148,11 +334,32 @@ public class InventoryManagementSystem {
         buttonPanel.add(updateButton);
         buttonPanel.add(deleteButton);
 
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(createInventoryFilterPanel(model), BorderLayout.CENTER);
+        northPanel.add(loading, BorderLayout.SOUTH);
+
+        // Clicking a header re-queries the pages in that column's order
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (column >= 0 && model.toggleSort(column)) {
+                    for (int i = 0; i < table.getColumnCount(); i++) {
+                        TableColumn tableColumn = table.getColumnModel().getColumn(i);
+                        tableColumn.setHeaderValue(model.getColumnName(tableColumn.getModelIndex()));
+                    }
+                    table.getTableHeader().repaint();
+                }
+            }
+        });
+
+        panel.add(northPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         inventoryFrame.add(panel);
         inventoryFrame.setVisible(true);
+        followChanges(inventoryFrame, "Cards", model::refreshChanges);
 
         addButton.addActionListener(e -> addCard(model));
         updateButton.addActionListener(e -> updateCard(table, model));
@@ -172,27 +379,126 @@ public class InventoryManagementSystem {
         });
     }
 
-    private static void loadInventoryData(DefaultTableModel model) {
-        String query = "SELECT * FROM Cards";
-        try (Connection conn = connect();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(query)) {
+    // Search, category, rarity, value range and low-stock filters. Changes are
+    // debounced so typing runs one query once the user pauses, not one per key.
+    private static JPanel createInventoryFilterPanel(PagedTableModel model) {
+        JTextField searchField = new JTextField(12);
+        JComboBox<String> categoryCombo = new JComboBox<>(new String[] {InventoryFilter.ANY});
+        JComboBox<String> rarityCombo = new JComboBox<>(new String[] {InventoryFilter.ANY});
+        JTextField minValueField = new JTextField(5);
+        JTextField maxValueField = new JTextField(5);
+        JCheckBox lowStockBox = new JCheckBox("Low stock \u2264");
+        JTextField lowStockField = new JTextField("5", 3);
+
+        Timer debounce = new Timer(250, e -> {
+            Double minValue = parseFilterNumber(minValueField);
+            Double maxValue = parseFilterNumber(maxValueField);
+            Double threshold = lowStockBox.isSelected() ? parseFilterNumber(lowStockField) : null;
+            InventoryFilter filter = new InventoryFilter(searchField.getText(),
+                    (String) categoryCombo.getSelectedItem(), (String) rarityCombo.getSelectedItem(),
+                    minValue, maxValue, threshold == null ? null : threshold.intValue());
+            model.setFilter(filter.conditions(), filter.params());
+        });
+        debounce.setRepeats(false);
+
+        DocumentListener onEdit = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        };
+        for (JTextField field : new JTextField[] {searchField, minValueField, maxValueField, lowStockField}) {
+            field.getDocument().addDocumentListener(onEdit);
+        }
+        categoryCombo.addActionListener(e -> debounce.restart());
+        rarityCombo.addActionListener(e -> debounce.restart());
+        lowStockBox.addActionListener(e -> debounce.restart());
+
+        // Filter choices come from the category and rarity indexes, off the EDT
+        DATA.submit(() -> distinctValues("category")).whenComplete(DataAccessExecutor.onEdt((values, e) -> {
+            if (e == null) {
+                values.forEach(categoryCombo::addItem);
+            }
+        }));
+        DATA.submit(() -> distinctValues("rarity")).whenComplete(DataAccessExecutor.onEdt((values, e) -> {
+            if (e == null) {
+                values.forEach(rarityCombo::addItem);
+            }
+        }));
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Search:"));
+        filterPanel.add(searchField);
+        filterPanel.add(new JLabel("Category:"));
+        filterPanel.add(categoryCombo);
+        filterPanel.add(new JLabel("Rarity:"));
+        filterPanel.add(rarityCombo);
+        filterPanel.add(new JLabel("Value:"));
+        filterPanel.add(minValueField);
+        filterPanel.add(new JLabel("to"));
+        filterPanel.add(maxValueField);
+        filterPanel.add(lowStockBox);
+        filterPanel.add(lowStockField);
+        return filterPanel;
+    }
+
+    // Blank means no bound; an unparsable number is shown in red and ignored
+    private static Double parseFilterNumber(JTextField field) {
+        String text = field.getText().trim();
+        field.setForeground(Color.BLACK);
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            field.setForeground(Color.RED);
+            return null;
+        }
+    }
+
+    private static List<String> distinctValues(String column) throws SQLException {
+        List<String> values = new ArrayList<>();
+        String sql = "SELECT DISTINCT " + column + " FROM Cards WHERE " + column + " IS NOT NULL AND "
+                + column + " <> '' ORDER BY " + column;
+        try (Connection conn = POOL.reader(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                model.addRow(new Object[] {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    // Only the visible pages of Cards are held in memory
+    private static PagedTableModel createInventoryModel() {
+        String[] columns = {"Card ID", "Name", "Category", "Rarity", "Value", "Quantity"};
+        String query = "SELECT card_id, name, category, rarity, value, quantity FROM Cards";
+        PagedTableModel model = new PagedTableModel(POOL, DATA, columns, query, "SELECT COUNT(*) FROM Cards",
+                "card_id", false, rs -> new Object[] {
                         rs.getInt("card_id"),
                         rs.getString("name"),
                         rs.getString("category"),
                         rs.getString("rarity"),
-                        rs.getDouble("value"),
-                        rs.getInt("quantity")
+                        rs.getObject("value"),  // Raw, so a NULL sort key stays null
+                        rs.getObject("quantity")
                 });
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error Loading Inventory Data: " + e.getMessage());
-        }
+        model.setSortExpressions("card_id", "name", "category", "rarity", "value", "quantity");
+        model.setChangeTable("Cards");
+        return model;
     }
 
-    private static void addCard(DefaultTableModel model) {
+    private static void addCard(PagedTableModel model) {
         JTextField nameField = new JTextField();
         JTextField categoryField = new JTextField();
         JTextField rarityField = new JTextField();
@@ -209,32 +515,25 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Add New Card", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
-            String sql = "INSERT INTO Cards(name, category, rarity, value, quantity) VALUES(?,?,?,?,?)";
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, nameField.getText());
-                pstmt.setString(2, categoryField.getText());
-                pstmt.setString(3, rarityField.getText());
-                pstmt.setDouble(4, Double.parseDouble(valueField.getText()));
-                pstmt.setInt(5, Integer.parseInt(quantityField.getText()));
-                pstmt.executeUpdate();
-
-                model.addRow(new Object[] {
-                        null,
-                        nameField.getText(),
-                        categoryField.getText(),
-                        rarityField.getText(),
-                        Double.parseDouble(valueField.getText()),
-                        Integer.parseInt(quantityField.getText())
-                });
+            String name = nameField.getText();
+            String category = categoryField.getText();
+            String rarity = rarityField.getText();
+            double value = Double.parseDouble(valueField.getText());
+            int quantity = Integer.parseInt(quantityField.getText());
+            DATA.submit(() -> SERVICE.addCard(name, category, rarity, value, quantity))
+                    .whenComplete(DataAccessExecutor.onEdt((cardId, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Adding Card: " + e.getMessage());
+                    return;
+                }
+                model.refreshChanges();
 
                 JOptionPane.showMessageDialog(null, "Card Added Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Adding Card: " + e.getMessage());
-            }
+            }));
         }
     }
 
-    private static void updateCard(JTable table, DefaultTableModel model) {
+    private static void updateCard(JTable table, PagedTableModel model) {
         int selectedRow = table.getSelectedRow();
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(null, "Please select a card to update.");
@@ -245,8 +544,8 @@ public class InventoryManagementSystem {
         JTextField nameField = new JTextField(model.getValueAt(selectedRow, 1).toString());
         JTextField categoryField = new JTextField(model.getValueAt(selectedRow, 2).toString());
         JTextField rarityField = new JTextField(model.getValueAt(selectedRow, 3).toString());
-        JTextField valueField = new JTextField(model.getValueAt(selectedRow, 4).toString());
-        JTextField quantityField = new JTextField(model.getValueAt(selectedRow, 5).toString());
+        JTextField valueField = new JTextField(Objects.toString(model.getValueAt(selectedRow, 4), ""));
+        JTextField quantityField = new JTextField(Objects.toString(model.getValueAt(selectedRow, 5), ""));
 
         Object[] fields = {
                 "Name:", nameField,
@@ -258,31 +557,22 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Update Card", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
-            String sql = "UPDATE Cards SET name=?, category=?, rarity=?, value=?, quantity=? WHERE card_id=?";
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, nameField.getText());
-                pstmt.setString(2, categoryField.getText());
-                pstmt.setString(3, rarityField.getText());
-                pstmt.setDouble(4, Double.parseDouble(valueField.getText()));
-                pstmt.setInt(5, Integer.parseInt(quantityField.getText()));
-                pstmt.setInt(6, Integer.parseInt(cardId.toString()));
-
-                pstmt.executeUpdate();
-
-                model.setValueAt(nameField.getText(), selectedRow, 1);
-                model.setValueAt(categoryField.getText(), selectedRow, 2);
-                model.setValueAt(rarityField.getText(), selectedRow, 3);
-                model.setValueAt(Double.parseDouble(valueField.getText()), selectedRow, 4);
-                model.setValueAt(Integer.parseInt(quantityField.getText()), selectedRow, 5);
+            InventoryService.Card card = new InventoryService.Card(Integer.parseInt(cardId.toString()),
+                    nameField.getText(), categoryField.getText(), rarityField.getText(),
+                    Double.parseDouble(valueField.getText()), Integer.parseInt(quantityField.getText()));
+            DATA.submit(() -> SERVICE.updateCard(card)).whenComplete(DataAccessExecutor.onEdt((updated, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Updating Card: " + e.getMessage());
+                    return;
+                }
+                model.refreshChanges();
 
                 JOptionPane.showMessageDialog(null, "Card Updated Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Updating Card: " + e.getMessage());
-            }
+            }));
         }
     }
 
-    private static void deleteCard(JTable table, DefaultTableModel model) {
+    private static void deleteCard(JTable table, PagedTableModel model) {
         int selectedRow = table.getSelectedRow();
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(null, "Please select a card to delete.");
@@ -290,20 +580,19 @@ public class InventoryManagementSystem {
         }
 
         Object cardId = model.getValueAt(selectedRow, 0);
-        String sql = "DELETE FROM Cards WHERE card_id=?";
 
         int option = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete this card?",
                 "Delete Confirmation", JOptionPane.YES_NO_OPTION);
         if (option == JOptionPane.YES_OPTION) {
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, Integer.parseInt(cardId.toString()));
-                pstmt.executeUpdate();
-
-                model.removeRow(selectedRow);
+            int id = Integer.parseInt(cardId.toString());
+            DATA.submit(() -> SERVICE.deleteCard(id)).whenComplete(DataAccessExecutor.onEdt((deleted, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Deleting Card: " + e.getMessage());
+                    return;
+                }
+                model.refreshChanges();
                 JOptionPane.showMessageDialog(null, "Card Deleted Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Deleting Card: " + e.getMessage());
-            }
+            }));
         }
     }
 
@@ -322,7 +611,8 @@ public class InventoryManagementSystem {
         model.addColumn("Email");
         model.addColumn("Phone");
 
-        loadSuppliersData(model);
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        loadSuppliersData(model, loading);
         JScrollPane scrollPane = new JScrollPane(table);
 
         JPanel buttonPanel = new JPanel();
@@ -334,34 +624,32 @@ public class InventoryManagementSystem {
         buttonPanel.add(updateButton);
         buttonPanel.add(deleteButton);
 
+        panel.add(loading, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         suppliersFrame.add(panel);
         suppliersFrame.setVisible(true);
+        followChanges(suppliersFrame, "Suppliers", () -> loadSuppliersData(model, loading));
 
         addButton.addActionListener(e -> addSupplier(model));
         updateButton.addActionListener(e -> updateSupplier(table, model));
         deleteButton.addActionListener(e -> deleteSupplier(table, model));
     }
 
-    private static void loadSuppliersData(DefaultTableModel model) {
+    private static void loadSuppliersData(DefaultTableModel model, JComponent loading) {
         String query = "SELECT * FROM Suppliers";
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                    rs.getInt("supplier_id"),
-                    rs.getString("name"),
-                    rs.getString("contact"),
-                    rs.getString("email"),
-                    rs.getString("phone")
-                });
+        DATA.loadInto(model, model, query, List.of(), rs -> new Object[]{
+            rs.getInt("supplier_id"),
+            rs.getString("name"),
+            rs.getString("contact"),
+            rs.getString("email"),
+            rs.getString("phone")
+        }, loading).whenComplete(DataAccessExecutor.onEdt((count, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error Loading Suppliers Data: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error Loading Suppliers Data: " + e.getMessage());
-        }
+        }));
     }
 
     private static void addSupplier(DefaultTableModel model) {
@@ -379,26 +667,26 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Add New Supplier", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
-            String sql = "INSERT INTO Suppliers(name, contact, email, phone) VALUES(?,?,?,?)";
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, nameField.getText());
-                pstmt.setString(2, contactField.getText());
-                pstmt.setString(3, emailField.getText());
-                pstmt.setString(4, phoneField.getText());
-                pstmt.executeUpdate();
-
+            String name = nameField.getText();
+            String contact = contactField.getText();
+            String email = emailField.getText();
+            String phone = phoneField.getText();
+            DATA.submit(() -> SERVICE.addSupplier(name, contact, email, phone))
+                    .whenComplete(DataAccessExecutor.onEdt((supplierId, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Adding Supplier: " + e.getMessage());
+                    return;
+                }
                 model.addRow(new Object[]{
-                    null,
-                    nameField.getText(),
-                    contactField.getText(),
-                    emailField.getText(),
-                    phoneField.getText()
+                    supplierId,
+                    name,
+                    contact,
+                    email,
+                    phone
                 });
 
                 JOptionPane.showMessageDialog(null, "Supplier Added Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Adding Supplier: " + e.getMessage());
-            }
+            }));
         }
     }
 
@@ -424,25 +712,25 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Update Supplier", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
-            String sql = "UPDATE Suppliers SET name=?, contact=?, email=?, phone=? WHERE supplier_id=?";
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, nameField.getText());
-                pstmt.setString(2, contactField.getText());
-                pstmt.setString(3, emailField.getText());
-                pstmt.setString(4, phoneField.getText());
-                pstmt.setInt(5, Integer.parseInt(supplierId.toString()));
-
-                pstmt.executeUpdate();
-
-                model.setValueAt(nameField.getText(), selectedRow, 1);
-                model.setValueAt(contactField.getText(), selectedRow, 2);
-                model.setValueAt(emailField.getText(), selectedRow, 3);
-                model.setValueAt(phoneField.getText(), selectedRow, 4);
+            InventoryService.Supplier supplier = new InventoryService.Supplier(
+                    Integer.parseInt(supplierId.toString()),
+                    nameField.getText(), contactField.getText(), emailField.getText(), phoneField.getText());
+            DATA.submit(() -> SERVICE.updateSupplier(supplier)).whenComplete(DataAccessExecutor.onEdt((updated, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Updating Supplier: " + e.getMessage());
+                    return;
+                }
+                // The table may have reloaded while the update ran
+                int row = rowOf(model, supplierId);
+                if (row >= 0) {
+                    model.setValueAt(supplier.name, row, 1);
+                    model.setValueAt(supplier.contact, row, 2);
+                    model.setValueAt(supplier.email, row, 3);
+                    model.setValueAt(supplier.phone, row, 4);
+                }
 
                 JOptionPane.showMessageDialog(null, "Supplier Updated Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Updating Supplier: " + e.getMessage());
-            }
+            }));
         }
     }
 
@@ -458,22 +746,35 @@ public class InventoryManagementSystem {
                 "Delete Confirmation", JOptionPane.YES_NO_OPTION);
         
         if (option == JOptionPane.YES_OPTION) {
-            String sql = "DELETE FROM Suppliers WHERE supplier_id=?";
-            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, Integer.parseInt(supplierId.toString()));
-                pstmt.executeUpdate();
-
-                model.removeRow(selectedRow);
+            int id = Integer.parseInt(supplierId.toString());
+            DATA.submit(() -> SERVICE.deleteSupplier(id)).whenComplete(DataAccessExecutor.onEdt((deleted, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Deleting Supplier: " + e.getMessage());
+                    return;
+                }
+                int row = rowOf(model, supplierId);
+                if (row >= 0) {
+                    model.removeRow(row);
+                }
                 JOptionPane.showMessageDialog(null, "Supplier Deleted Successfully!");
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(null, "Error Deleting Supplier: " + e.getMessage());
+            }));
+        }
+    }
+
+    // Row holding this id in column 0, or -1
+    private static int rowOf(DefaultTableModel model, Object id) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (id.toString().equals(String.valueOf(model.getValueAt(row, 0)))) {
+                return row;
             }
         }
+        return -1;
     }
     
  // Add a method to compare prices
     private static void comparePrices(int cardId) {
         JFrame compareFrame = new JFrame("Price Comparison");
+        compareFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         compareFrame.setSize(600, 400);
         compareFrame.setLayout(new BorderLayout());
 
@@ -489,53 +790,118 @@ public class InventoryManagementSystem {
                       "WHERE sp.card_id = ? " +
                       "ORDER BY sp.price ASC";
 
-        try (Connection conn = connect();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, cardId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                    rs.getString("name"),
-                    String.format("$%.2f", rs.getDouble("price")),
-                    rs.getString("last_updated")
-                });
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        compareFrame.add(loading, BorderLayout.NORTH);
+        Runnable reload = () -> DATA.loadInto(model, model, query, List.of(cardId), rs -> new Object[]{
+            rs.getString("name"),
+            String.format("$%.2f", rs.getDouble("price")),
+            rs.getString("last_updated")
+        }, loading).whenComplete(DataAccessExecutor.onEdt((count, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error loading price comparison: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading price comparison: " + e.getMessage());
-        }
+        }));
+        reload.run();
 
         JScrollPane scrollPane = new JScrollPane(table);
         compareFrame.add(scrollPane, BorderLayout.CENTER);
 
         // Add a button to record new prices
+        JPanel buttonPanel = new JPanel();
         JButton addPriceButton = new JButton("Record New Price");
-        addPriceButton.addActionListener(e -> recordNewPrice(cardId));
+        addPriceButton.addActionListener(e -> recordNewPrice(cardId, reload));
+        JButton historyButton = new JButton("Price History");
+        historyButton.addActionListener(e -> viewPriceHistory(cardId));
+        buttonPanel.add(addPriceButton);
+        buttonPanel.add(historyButton);
         
-        compareFrame.add(addPriceButton, BorderLayout.SOUTH);
+        compareFrame.add(buttonPanel, BorderLayout.SOUTH);
         compareFrame.setVisible(true);
+        followChanges(compareFrame, "SupplierPrices", reload);
+    }
+
+    // Superseded prices for a card, optionally limited to a date range
+    private static void viewPriceHistory(int cardId) {
+        JFrame historyFrame = new JFrame("Price History");
+        historyFrame.setSize(700, 400);
+        historyFrame.setLayout(new BorderLayout());
+
+        JPanel filterPanel = new JPanel();
+        JTextField dateFromField = new JTextField(10);
+        JTextField dateToField = new JTextField(10);
+        JButton applyFilter = new JButton("Apply Filter");
+        filterPanel.add(new JLabel("From Date (YYYY-MM-DD):"));
+        filterPanel.add(dateFromField);
+        filterPanel.add(new JLabel("To Date (YYYY-MM-DD):"));
+        filterPanel.add(dateToField);
+        filterPanel.add(applyFilter);
+
+        DefaultTableModel model = new DefaultTableModel();
+        JTable table = new JTable(model);
+        model.addColumn("Supplier Name");
+        model.addColumn("Price");
+        model.addColumn("Valid From");
+        model.addColumn("Valid To");
+
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(filterPanel, BorderLayout.CENTER);
+        top.add(loading, BorderLayout.SOUTH);
+
+        Runnable load = () -> {
+            // A price belongs to the range if it was valid at any point inside it
+            StringBuilder query = new StringBuilder(
+                "SELECT s.name, h.price, h.valid_from, h.valid_to " +
+                "FROM SupplierPriceHistory h " +
+                "JOIN Suppliers s ON s.supplier_id = h.supplier_id " +
+                "WHERE h.card_id = ?"
+            );
+            ArrayList<Object> params = new ArrayList<>();
+            params.add(cardId);
+            if (!dateFromField.getText().isEmpty()) {
+                query.append(" AND h.valid_to >= ?");
+                params.add(dateFromField.getText());
+            }
+            if (!dateToField.getText().isEmpty()) {
+                query.append(" AND h.valid_from <= ?");
+                params.add(dateToField.getText());
+            }
+            query.append(" ORDER BY h.valid_to DESC, s.name");
+
+            DATA.loadInto(model, model, query.toString(), params, rs -> new Object[]{
+                rs.getString("name"),
+                String.format("$%.2f", rs.getDouble("price")),
+                rs.getString("valid_from"),
+                rs.getString("valid_to")
+            }, loading).whenComplete(DataAccessExecutor.onEdt((count, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error loading price history: " + e.getMessage());
+                }
+            }));
+        };
+        applyFilter.addActionListener(e -> load.run());
+        load.run();
+
+        historyFrame.add(top, BorderLayout.NORTH);
+        historyFrame.add(new JScrollPane(table), BorderLayout.CENTER);
+        historyFrame.setVisible(true);
     }
 
     // Method to record a new price
-    private static void recordNewPrice(int cardId) {
-        // Get list of suppliers
-        ArrayList<String> supplierNames = new ArrayList<>();
-        ArrayList<Integer> supplierIds = new ArrayList<>();
-        
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT supplier_id, name FROM Suppliers")) {
-            while (rs.next()) {
-                supplierIds.add(rs.getInt("supplier_id"));
-                supplierNames.add(rs.getString("name"));
+    private static void recordNewPrice(int cardId, Runnable onRecorded) {
+        // Get list of suppliers from the lookup cache
+        DATA.submit(CACHE::supplierChoices).whenComplete(DataAccessExecutor.onEdt((supplierMap, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
+                return;
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
-            return;
-        }
+            showPriceDialog(cardId, onRecorded, supplierMap);
+        }));
+    }
 
+    private static void showPriceDialog(int cardId, Runnable onRecorded, Map<String, Integer> supplierMap) {
         // Create input dialog
-        JComboBox<String> supplierCombo = new JComboBox<>(supplierNames.toArray(new String[0]));
+        JComboBox<String> supplierCombo = new JComboBox<>(supplierMap.keySet().toArray(new String[0]));
         JTextField priceField = new JTextField();
 
         Object[] fields = {
@@ -545,27 +911,25 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Record New Price", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
+            double price;
             try {
-                double price = Double.parseDouble(priceField.getText());
-                int supplierId = supplierIds.get(supplierCombo.getSelectedIndex());
-
-                String sql = "INSERT OR REPLACE INTO SupplierPrices (supplier_id, card_id, price, last_updated) " +
-                            "VALUES (?, ?, ?, date('now'))";
-                
-                try (Connection conn = connect();
-                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setInt(1, supplierId);
-                    pstmt.setInt(2, cardId);
-                    pstmt.setDouble(3, price);
-                    pstmt.executeUpdate();
-
-                    JOptionPane.showMessageDialog(null, "Price recorded successfully!");
-                }
+                price = Double.parseDouble(priceField.getText());
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(null, "Please enter a valid price!");
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(null, "Error recording price: " + ex.getMessage());
+                return;
             }
+            int supplierId = supplierMap.get(supplierCombo.getSelectedItem().toString());
+            DATA.submit(() -> {
+                SERVICE.recordPrice(supplierId, cardId, price);
+                return null;
+            }).whenComplete(DataAccessExecutor.onEdt((ignored, ex) -> {
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(null, "Error recording price: " + ex.getMessage());
+                    return;
+                }
+                onRecorded.run();
+                JOptionPane.showMessageDialog(null, "Price recorded successfully!");
+            }));
         }
     }
     
@@ -578,75 +942,70 @@ public class InventoryManagementSystem {
         salesFrame.setLocationRelativeTo(null);  // Center the window
 
         JPanel panel = new JPanel(new BorderLayout());
-        DefaultTableModel model = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;  // Make table read-only
-            }
-        };
+        PagedTableModel model = createSalesModel();  // Read-only, paged from the database
         JTable table = new JTable(model);
-        
-        // Define columns
-        model.addColumn("Sale ID");
-        model.addColumn("Card Name");
-        model.addColumn("Supplier Name");
-        model.addColumn("Quantity");
-        model.addColumn("Sale Date");
-        model.addColumn("Sale Price");
 
         // Load initial data
-        loadSalesData(model);
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        model.setLoadingIndicator(loading);
+        model.refresh();
         JScrollPane scrollPane = new JScrollPane(table);
 
         // Create button panel
         JPanel buttonPanel = new JPanel();
         JButton addButton = new JButton("Record Sale");
+        JButton orderButton = new JButton("New Order");
+        JButton ordersButton = new JButton("Orders");
         JButton deleteButton = new JButton("Delete Sale");
         JButton refreshButton = new JButton("Refresh");  // Add refresh button
+        JButton archiveButton = new JButton("Archive Old Sales...");
 
         buttonPanel.add(addButton);
+        buttonPanel.add(orderButton);
+        buttonPanel.add(ordersButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(refreshButton);  // Add refresh button to panel
+        buttonPanel.add(archiveButton);
 
+        panel.add(loading, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         salesFrame.add(panel);
 
-        // Add action listeners
-        addButton.addActionListener(e -> {
-            recordSale(model);
-            loadSalesData(model);  // Refresh after adding
-        });
+        // Add action listeners, both refresh the table once their write commits
+        addButton.addActionListener(e -> recordSale(model));
+
+        orderButton.addActionListener(e -> newOrder(model));
+
+        ordersButton.addActionListener(e -> openOrdersWindow(model));
         
-        deleteButton.addActionListener(e -> {
-            deleteSale(table, model);
-            loadSalesData(model);  // Refresh after deleting
-        });
+        deleteButton.addActionListener(e -> deleteSale(table, model));
         
-        refreshButton.addActionListener(e -> {
-            model.setRowCount(0);  // Clear existing data
-            loadSalesData(model);  // Reload data
-        });
+        // Full reload: also picks up renamed cards and suppliers, which the
+        // Sales change log doesn't cover
+        refreshButton.addActionListener(e -> model.refresh());
+
+        archiveButton.addActionListener(e -> archiveOldSales(salesFrame, model));
 
         salesFrame.setVisible(true);
+        followChanges(salesFrame, "Sales", model::refreshChanges);
     }
 
-    // Update loadSalesData method to clear existing data first
-    private static void loadSalesData(DefaultTableModel model) {
-        model.setRowCount(0);  // Clear existing data
+    // Newest sales first, paged by sale_id so only the visible window is loaded
+    private static PagedTableModel createSalesModel() {
+        String[] columns = {"Sale ID", "Card Name", "Supplier Name", "Quantity", "Sale Date", "Sale Price"};
         String query = "SELECT s.sale_id, c.name as card_name, sup.name as supplier_name, " +
                        "s.quantity, s.sale_date, s.sale_price " +
                        "FROM Sales s " +
                        "JOIN Cards c ON s.card_id = c.card_id " +
-                       "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id " +
-                       "ORDER BY s.sale_date DESC";  // Show newest sales first
-                       
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                model.addRow(new Object[]{
+                       "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id";
+        // Counted over the same joins, so the count matches the rows the pages return
+        String count = "SELECT COUNT(*) FROM Sales s " +
+                       "JOIN Cards c ON s.card_id = c.card_id " +
+                       "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id";
+        PagedTableModel model = new PagedTableModel(POOL, DATA, columns, query, count,
+                "s.sale_id", true, rs -> new Object[]{
                     rs.getInt("sale_id"),
                     rs.getString("card_name"),
                     rs.getString("supplier_name"),
@@ -654,49 +1013,35 @@ public class InventoryManagementSystem {
                     rs.getString("sale_date"),
                     String.format("$%.2f", rs.getDouble("sale_price"))
                 });
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error Loading Sales Data: " + e.getMessage());
-        }
+        model.setChangeTable("Sales");
+        return model;
     }
 
  // Modify the sales recording interface
-    private static void recordSale(DefaultTableModel model) {
-        // Get list of cards and suppliers for dropdown
-        Map<String, Integer> cardMap = new HashMap<>();
-        Map<String, Integer> supplierMap = new HashMap<>();
-        
-        // Load cards
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT card_id, name FROM Cards")) {
-            while (rs.next()) {
-                cardMap.put(rs.getString("name"), rs.getInt("card_id"));
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading cards: " + e.getMessage());
-            return;
-        }
+    private static void recordSale(PagedTableModel model) {
+        withSupplierChoices(supplierMap -> showSaleDialog(model, supplierMap));
+    }
 
-        // Load suppliers
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT supplier_id, name FROM Suppliers")) {
-            while (rs.next()) {
-                supplierMap.put(rs.getString("name"), rs.getInt("supplier_id"));
+    // Loads supplier names for the sale dropdowns, then continues on the EDT.
+    // Cards are picked with the type-ahead search instead of a dropdown.
+    private static void withSupplierChoices(Consumer<Map<String, Integer>> then) {
+        DATA.submit(CACHE::supplierChoices).whenComplete(DataAccessExecutor.onEdt((supplierMap, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
+                return;
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
-            return;
-        }
+            then.accept(supplierMap);
+        }));
+    }
 
-        JComboBox<String> cardCombo = new JComboBox<>(cardMap.keySet().toArray(new String[0]));
+    private static void showSaleDialog(PagedTableModel model, Map<String, Integer> supplierMap) {
+        CardSearchField cardSearch = CardSearchField.create(SEARCH, DATA);
         JComboBox<String> supplierCombo = new JComboBox<>(supplierMap.keySet().toArray(new String[0]));
         JTextField quantityField = new JTextField();
         JTextField priceField = new JTextField();
 
         Object[] fields = {
-            "Card:", cardCombo,
+            "Card (type to search):", cardSearch,
             "Supplier:", supplierCombo,
             "Quantity:", quantityField,
             "Sale Price:", priceField
@@ -704,75 +1049,206 @@ public class InventoryManagementSystem {
 
         int option = JOptionPane.showConfirmDialog(null, fields, "Record Sale", JOptionPane.OK_CANCEL_OPTION);
         if (option == JOptionPane.OK_OPTION) {
-            Connection conn = null;
+            if (cardSearch.getSelectedMatch() == null) {
+                JOptionPane.showMessageDialog(null, "Please search for and select a card.");
+                return;
+            }
+            int cardId = cardSearch.getSelectedMatch().cardId;
+            int supplierId;
+            int quantity;
+            double price;
             try {
-                conn = connect();
-                conn.setAutoCommit(false);  // Start transaction
-
-                int cardId = cardMap.get(cardCombo.getSelectedItem().toString());
-                int supplierId = supplierMap.get(supplierCombo.getSelectedItem().toString());
-                int quantity = Integer.parseInt(quantityField.getText());
-                double price = Double.parseDouble(priceField.getText());
-
-                // First check if we have enough quantity
-                String checkQuery = "SELECT quantity FROM Cards WHERE card_id = ?";
-                try (PreparedStatement checkStmt = conn.prepareStatement(checkQuery)) {
-                    checkStmt.setInt(1, cardId);
-                    ResultSet rs = checkStmt.executeQuery();
-                    if (rs.next()) {
-                        int currentQuantity = rs.getInt("quantity");
-                        if (currentQuantity < quantity) {
-                            throw new SQLException("Insufficient quantity available. Current stock: " + currentQuantity);
-                        }
-                    }
-                }
-
-                // Update card quantity
-                String updateQuantitySQL = "UPDATE Cards SET quantity = quantity - ? WHERE card_id = ?";
-                try (PreparedStatement quantityStmt = conn.prepareStatement(updateQuantitySQL)) {
-                    quantityStmt.setInt(1, quantity);
-                    quantityStmt.setInt(2, cardId);
-                    quantityStmt.executeUpdate();
-                }
+                supplierId = supplierMap.get(supplierCombo.getSelectedItem().toString());
+                quantity = Integer.parseInt(quantityField.getText());
+                price = Double.parseDouble(priceField.getText());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(null, "Please enter valid numbers for quantity and price!");
+                return;
+            }
 
-                // Record the sale
-                String insertSaleSQL = "INSERT INTO Sales(card_id, supplier_id, quantity, sale_date, sale_price) VALUES(?, ?, ?, date('now'), ?)";
-                try (PreparedStatement saleStmt = conn.prepareStatement(insertSaleSQL)) {
-                    saleStmt.setInt(1, cardId);
-                    saleStmt.setInt(2, supplierId);
-                    saleStmt.setInt(3, quantity);
-                    saleStmt.setDouble(4, price);
-                    saleStmt.executeUpdate();
+            DATA.submit(() -> SERVICE.recordSale(cardId, supplierId, quantity, price))
+                    .whenComplete(DataAccessExecutor.onEdt((saleId, ex) -> {
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(null, "Error recording sale: " + ex.getMessage());
+                    return;
                 }
+                model.refreshChanges();
+                JOptionPane.showMessageDialog(null, saleId < 0 ? "Sale queued." : "Sale recorded successfully!");
+            }));
+        }
+    }
 
-                conn.commit();  // Commit transaction
+    // Cart for several cards at once, committed as a single order
+    private static void newOrder(PagedTableModel salesModel) {
+        withSupplierChoices(supplierMap -> showOrderDialog(salesModel, supplierMap));
+    }
 
-                // Update the sales table display
-                model.addRow(new Object[]{
-                    null,
-                    cardCombo.getSelectedItem(),
-                    supplierCombo.getSelectedItem(),
-                    quantity,
-                    LocalDate.now().toString(),
-                    price
-                });
+    private static void showOrderDialog(PagedTableModel salesModel, Map<String, Integer> supplierMap) {
+        JDialog dialog = new JDialog((Frame) null, "New Order", true);
+        dialog.setSize(700, 450);
+        dialog.setLayout(new BorderLayout());
 
-                JOptionPane.showMessageDialog(null, "Sale recorded successfully!");
+        CardSearchField cardSearch = CardSearchField.create(SEARCH, DATA);
+        JComboBox<String> supplierCombo = new JComboBox<>(supplierMap.keySet().toArray(new String[0]));
+        JTextField quantityField = new JTextField(4);
+        JTextField priceField = new JTextField(6);
+        JButton addLineButton = new JButton("Add Line");
+
+        JPanel linePanel = new JPanel();
+        linePanel.add(new JLabel("Supplier:"));
+        linePanel.add(supplierCombo);
+        linePanel.add(new JLabel("Qty:"));
+        linePanel.add(quantityField);
+        linePanel.add(new JLabel("Price:"));
+        linePanel.add(priceField);
+        linePanel.add(addLineButton);
+
+        JPanel entryPanel = new JPanel(new BorderLayout());
+        entryPanel.add(new JLabel("Card (type to search):"), BorderLayout.NORTH);
+        entryPanel.add(cardSearch, BorderLayout.CENTER);
+        entryPanel.add(linePanel, BorderLayout.SOUTH);
+
+        List<OrderService.LineItem> lines = new ArrayList<>();
+        DefaultTableModel linesModel = new DefaultTableModel(
+                new Object[]{"Card", "Supplier", "Quantity", "Price", "Total"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable linesTable = new JTable(linesModel);
+
+        JLabel totalLabel = new JLabel("Order Total: $0.00");
+        JButton removeLineButton = new JButton("Remove Line");
+        JButton commitButton = new JButton("Commit Order");
+        JPanel bottomPanel = new JPanel();
+        bottomPanel.add(totalLabel);
+        bottomPanel.add(removeLineButton);
+        bottomPanel.add(commitButton);
+
+        Runnable updateTotal = () -> totalLabel.setText(String.format("Order Total: $%.2f",
+                lines.stream().mapToDouble(OrderService.LineItem::total).sum()));
+
+        addLineButton.addActionListener(e -> {
+            CardSearch.Match card = cardSearch.getSelectedMatch();
+            if (card == null || supplierCombo.getSelectedItem() == null) {
+                JOptionPane.showMessageDialog(dialog, "Please select a card and a supplier.");
+                return;
+            }
+            try {
+                String supplierName = supplierCombo.getSelectedItem().toString();
+                OrderService.LineItem line = new OrderService.LineItem(card.cardId, card.name,
+                        supplierMap.get(supplierName), supplierName,
+                        Integer.parseInt(quantityField.getText()), Double.parseDouble(priceField.getText()));
+                lines.add(line);
+                linesModel.addRow(line.toRow());
+                updateTotal.run();
+                quantityField.setText("");
+                priceField.setText("");
             } catch (NumberFormatException ex) {
-                if (conn != null) try { conn.rollback(); } catch (SQLException e) { }
-                JOptionPane.showMessageDialog(null, "Please enter valid numbers for quantity and price!");
-            } catch (SQLException ex) {
-                if (conn != null) try { conn.rollback(); } catch (SQLException e) { }
-                JOptionPane.showMessageDialog(null, "Error recording sale: " + ex.getMessage());
-            } finally {
-                if (conn != null) {
-                    try {
-                        conn.setAutoCommit(true);
-                        conn.close();
-                    } catch (SQLException e) { }
+                JOptionPane.showMessageDialog(dialog, "Please enter valid numbers for quantity and price!");
+            }
+        });
+
+        removeLineButton.addActionListener(e -> {
+            int selectedRow = linesTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(dialog, "Please select a line to remove.");
+                return;
+            }
+            lines.remove(selectedRow);
+            linesModel.removeRow(selectedRow);
+            updateTotal.run();
+        });
+
+        commitButton.addActionListener(e -> {
+            if (lines.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Add at least one line to the order.");
+                return;
+            }
+            commitButton.setEnabled(false);
+            List<OrderService.LineItem> snapshot = new ArrayList<>(lines);
+            DATA.submit(() -> Metrics.time("service.placeOrder", () -> ORDERS.placeOrder(snapshot)))
+                    .whenComplete(DataAccessExecutor.onEdt((orderId, ex) -> {
+                commitButton.setEnabled(true);
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(dialog, "Error committing order: " + ex.getMessage());
+                    return;
                 }
+                salesModel.refreshChanges();
+                JOptionPane.showMessageDialog(dialog, "Order " + orderId + " recorded with " + snapshot.size() + " lines!");
+                dialog.dispose();
+            }));
+        });
+
+        dialog.add(entryPanel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(linesTable), BorderLayout.CENTER);
+        dialog.add(bottomPanel, BorderLayout.SOUTH);
+        dialog.setLocationRelativeTo(null);
+        dialog.setVisible(true);
+    }
+
+    private static void openOrdersWindow(PagedTableModel salesModel) {
+        JFrame ordersFrame = new JFrame("Orders");
+        ordersFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        ordersFrame.setSize(700, 500);
+
+        DefaultTableModel model = new DefaultTableModel(
+                new Object[]{"Order ID", "Order Date", "Status", "Lines", "Quantity", "Total"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
             }
-        }
+        };
+        JTable table = new JTable(model);
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+
+        Runnable reload = () -> DATA.loadInto(model, model, OrderService.ORDERS_QUERY, List.of(), rs -> new Object[]{
+            rs.getLong("order_id"),
+            rs.getString("order_date"),
+            rs.getString("status"),
+            rs.getInt("line_count"),
+            rs.getInt("quantity"),
+            String.format("$%.2f", rs.getDouble("total"))
+        }, loading).whenComplete(DataAccessExecutor.onEdt((count, e) -> {
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error loading orders: " + e.getMessage());
+            }
+        }));
+        reload.run();
+
+        JButton reverseButton = new JButton("Reverse Order");
+        reverseButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(null, "Please select an order to reverse.");
+                return;
+            }
+            long orderId = (Long) model.getValueAt(selectedRow, 0);
+            int option = JOptionPane.showConfirmDialog(null,
+                    "Reverse order " + orderId + " and put all of its cards back in stock?",
+                    "Reverse Confirmation", JOptionPane.YES_NO_OPTION);
+            if (option != JOptionPane.YES_OPTION) {
+                return;
+            }
+            DATA.submit(() -> ORDERS.reverseOrder(orderId)).whenComplete(DataAccessExecutor.onEdt((reversed, ex) -> {
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(null, "Error reversing order: " + ex.getMessage());
+                    return;
+                }
+                reload.run();
+                salesModel.refreshChanges();
+                JOptionPane.showMessageDialog(null, "Order reversed, " + reversed + " lines put back in stock.");
+            }));
+        });
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(reverseButton);
+
+        ordersFrame.add(loading, BorderLayout.NORTH);
+        ordersFrame.add(new JScrollPane(table), BorderLayout.CENTER);
+        ordersFrame.add(buttonPanel, BorderLayout.SOUTH);
+        ordersFrame.setVisible(true);
     }
 
     // Add a method to view sales reports
@@ -783,10 +1259,16 @@ public class InventoryManagementSystem {
 
         // Create panel for filter options
         JPanel filterPanel = new JPanel();
-        JComboBox<String> supplierFilter = new JComboBox<>(new String[]{"All Suppliers"});
+        JComboBox<String> supplierFilter = new JComboBox<>(new String[]{SalesReportQuery.ALL_SUPPLIERS});
         JTextField dateFromField = new JTextField(10);
         JTextField dateToField = new JTextField(10);
         JButton applyFilter = new JButton("Apply Filter");
+        JButton exportButton = new JButton("Export...");
+        JButton analyzeButton = new JButton("Analyze...");
+        JComboBox<String> viewSelector = new JComboBox<>(new String[]{"Sales Detail"});
+        for (SalesReportEngine.Breakdown breakdown : SalesReportEngine.Breakdown.values()) {
+            viewSelector.addItem("By " + breakdown.getLabel());
+        }
 
         filterPanel.add(new JLabel("Supplier:"));
         filterPanel.add(supplierFilter);
@@ -794,7 +1276,11 @@ public class InventoryManagementSystem {
         filterPanel.add(dateFromField);
         filterPanel.add(new JLabel("To Date (YYYY-MM-DD):"));
         filterPanel.add(dateToField);
+        filterPanel.add(new JLabel("View:"));
+        filterPanel.add(viewSelector);
         filterPanel.add(applyFilter);
+        filterPanel.add(exportButton);
+        filterPanel.add(analyzeButton);
 
         // Create table for sales data
         DefaultTableModel model = new DefaultTableModel();
@@ -816,79 +1302,110 @@ public class InventoryManagementSystem {
         totalLabel.setForeground(PRIMARY_COLOR);
         summaryPanel.add(totalLabel);
 
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        summaryPanel.add(loading, 0);
+
         // Load suppliers into filter
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT name FROM Suppliers")) {
-            while (rs.next()) {
-                supplierFilter.addItem(rs.getString("name"));
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
-        }
+        DATA.submit(CACHE::supplierNames)
+            .whenComplete(DataAccessExecutor.onEdt((suppliers, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error loading suppliers: " + e.getMessage());
+                    return;
+                }
+                for (String name : suppliers) {
+                    supplierFilter.addItem(name);
+                }
+            }));
 
-        // Add action listener for filter
+        // Add action listener for filter; a second click cancels the load in flight
         applyFilter.addActionListener(e -> {
-        	model.setRowCount(0); // Clear existing data
-            double totalSales = 0.0; // Track total sales
-            
-            StringBuilder query = new StringBuilder(
-                "SELECT s.sale_id, c.name as card_name, sup.name as supplier_name, " +
-                "s.quantity, s.sale_date, s.sale_price, " +
-                "(s.quantity * s.sale_price) as total_price " +  // Changed 'total' to 'total_price'
-                "FROM Sales s " +
-                "JOIN Cards c ON s.card_id = c.card_id " +
-                "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id " +
-                "WHERE 1=1"
-            );
-
-            ArrayList<Object> params = new ArrayList<>();
-
-            if (!supplierFilter.getSelectedItem().equals("All Suppliers")) {
-                query.append(" AND sup.name = ?");
-                params.add(supplierFilter.getSelectedItem());
-            }
-
-            if (!dateFromField.getText().isEmpty()) {
-                query.append(" AND s.sale_date >= ?");
-                params.add(dateFromField.getText());
-            }
-
-            if (!dateToField.getText().isEmpty()) {
-                query.append(" AND s.sale_date <= ?");
-                params.add(dateToField.getText());
+            SalesReportQuery query = new SalesReportQuery((String) supplierFilter.getSelectedItem(),
+                    dateFromField.getText(), dateToField.getText());
+
+            // Totals come from the rollup table, not from summing the loaded rows
+            DATA.submitLatest(totalLabel, () -> new SalesReportEngine(POOL).summarize(query))
+                .whenComplete(DataAccessExecutor.onEdt((summary, ex) -> {
+                    if (ex != null) {
+                        JOptionPane.showMessageDialog(null, "Error loading sales totals: " + ex.getMessage());
+                        return;
+                    }
+                    totalLabel.setText(String.format("Total Sales: $%.2f (%d sales, %d cards)",
+                            summary.revenue, summary.saleCount, summary.quantity));
+                }));
+
+            int view = viewSelector.getSelectedIndex();
+            if (view == 0) {
+                table.setModel(model);
+                SalesReportQuery detail = ARCHIVE.covering(query);  // Older years live in the archives
+                DATA.loadInto(table, model, detail.detailSql(), detail.params(), rs -> new Object[]{
+                    rs.getInt("sale_id"),
+                    rs.getString("card_name"),
+                    rs.getString("supplier_name"),
+                    rs.getInt("quantity"),
+                    rs.getString("sale_date"),
+                    String.format("$%.2f", rs.getDouble("sale_price")),
+                    String.format("$%.2f", rs.getDouble("total_price"))
+                }, loading).whenComplete(DataAccessExecutor.onEdt((count, ex) -> {
+                    if (ex != null) {
+                        JOptionPane.showMessageDialog(null, "Error loading sales data: " + ex.getMessage());
+                    }
+                }));
+            } else {
+                SalesReportEngine.Breakdown breakdown = SalesReportEngine.Breakdown.values()[view - 1];
+                DefaultTableModel breakdownModel = new DefaultTableModel();
+                breakdownModel.addColumn(breakdown.getLabel());
+                breakdownModel.addColumn("Sales");
+                breakdownModel.addColumn("Quantity");
+                breakdownModel.addColumn("Revenue");
+                table.setModel(breakdownModel);
+                DATA.loadInto(table, breakdownModel, SalesReportEngine.breakdownSql(query, breakdown), query.params(),
+                        rs -> new Object[]{
+                            rs.getString("label"),
+                            rs.getLong("sale_count"),
+                            rs.getLong("quantity"),
+                            String.format("$%.2f", rs.getDouble("revenue"))
+                        }, loading).whenComplete(DataAccessExecutor.onEdt((count, ex) -> {
+                    if (ex != null) {
+                        JOptionPane.showMessageDialog(null, "Error loading sales breakdown: " + ex.getMessage());
+                    }
+                }));
             }
+        });
 
-            query.append(" ORDER BY s.sale_date DESC");
-
-            try (Connection conn = connect();
-                    PreparedStatement pstmt = conn.prepareStatement(query.toString())) {
-                   
-                   for (int i = 0; i < params.size(); i++) {
-                       pstmt.setObject(i + 1, params.get(i));
-                   }
-
-                   ResultSet rs = pstmt.executeQuery();
-                   while (rs.next()) {
-                       double total = rs.getDouble("total_price");  // Changed to match column name
-                       totalSales += total;
-                       
-                       model.addRow(new Object[]{
-                           rs.getInt("sale_id"),
-                           rs.getString("card_name"),
-                           rs.getString("supplier_name"),
-                           rs.getInt("quantity"),
-                           rs.getString("sale_date"),
-                           String.format("$%.2f", rs.getDouble("sale_price")),
-                           String.format("$%.2f", total)
-                       });
-                   }
-                totalLabel.setText(String.format("Total Sales: $%.2f", totalSales));
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(null, "Error loading sales data: " + ex.getMessage());
+        // Export streams the same filtered rows to a file without touching the table
+        exportButton.addActionListener(e -> {
+            SalesReportQuery query = ARCHIVE.covering(new SalesReportQuery(
+                    (String) supplierFilter.getSelectedItem(), dateFromField.getText(), dateToField.getText()));
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Export Sales Report (.csv or .json)");
+            if (chooser.showSaveDialog(reportFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
+            Path file = chooser.getSelectedFile().toPath();
+            JLabel status = new JLabel("Exporting...");
+            summaryPanel.add(status, 0);
+            summaryPanel.revalidate();
+            DATA.submit(() -> {
+                try {
+                    return new SalesReportExporter(POOL).export(query, file, SalesReportExporter.formatFor(file),
+                            rows -> SwingUtilities.invokeLater(() -> status.setText("Exported " + rows + " rows...")));
+                } catch (IOException ex) {
+                    throw new SQLException("Error writing file: " + ex.getMessage(), ex);
+                }
+            }).whenComplete(DataAccessExecutor.onEdt((rows, ex) -> {
+                summaryPanel.remove(status);
+                summaryPanel.revalidate();
+                summaryPanel.repaint();
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(reportFrame, "Error exporting sales report: " + ex.getMessage());
+                    return;
+                }
+                JOptionPane.showMessageDialog(reportFrame, "Exported " + rows + " sales to " + file);
+            }));
         });
 
+        analyzeButton.addActionListener(e -> openAnalyticsWindow(dateFromField.getText(), dateToField.getText()));
+
         // Add components to frame
         reportFrame.add(filterPanel, BorderLayout.NORTH);
         reportFrame.add(new JScrollPane(table), BorderLayout.CENTER);
@@ -897,8 +1414,166 @@ public class InventoryManagementSystem {
         reportFrame.setVisible(true);
     }
 
-  
-    private static void deleteSale(JTable table, DefaultTableModel model) {
+    // Group-by questions over the in-memory sales snapshot, e.g. revenue by
+    // rarity by month or the top suppliers in each category
+    private static void openAnalyticsWindow(String dateFrom, String dateTo) {
+        JFrame analyticsFrame = new JFrame("Sales Analytics");
+        analyticsFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        analyticsFrame.setSize(900, 600);
+        analyticsFrame.setLayout(new BorderLayout());
+
+        String none = "(none)";
+        JComboBox<String> groupBy = new JComboBox<>();
+        JComboBox<String> thenBy = new JComboBox<>(new String[] {none});
+        for (SalesAnalytics.Dimension dimension : SalesAnalytics.Dimension.values()) {
+            groupBy.addItem(dimension.getLabel());
+            thenBy.addItem(dimension.getLabel());
+        }
+        JComboBox<String> rankBy = new JComboBox<>();
+        for (SalesAnalytics.Measure measure : SalesAnalytics.Measure.values()) {
+            rankBy.addItem(measure.getLabel());
+        }
+        JComboBox<String> top = new JComboBox<>(new String[] {"All", "3", "5", "10", "25"});
+        JComboBox<String> supplierCombo = new JComboBox<>(new String[] {InventoryFilter.ANY});
+        JComboBox<String> categoryCombo = new JComboBox<>(new String[] {InventoryFilter.ANY});
+        JComboBox<String> rarityCombo = new JComboBox<>(new String[] {InventoryFilter.ANY});
+        JTextField dateFromField = new JTextField(dateFrom, 8);
+        JTextField dateToField = new JTextField(dateTo, 8);
+        JButton runButton = new JButton("Run");
+
+        JPanel groupPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        groupPanel.add(new JLabel("Group by:"));
+        groupPanel.add(groupBy);
+        groupPanel.add(new JLabel("then by:"));
+        groupPanel.add(thenBy);
+        groupPanel.add(new JLabel("Rank by:"));
+        groupPanel.add(rankBy);
+        groupPanel.add(new JLabel("Top:"));
+        groupPanel.add(top);
+        groupPanel.add(runButton);
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Supplier:"));
+        filterPanel.add(supplierCombo);
+        filterPanel.add(new JLabel("Category:"));
+        filterPanel.add(categoryCombo);
+        filterPanel.add(new JLabel("Rarity:"));
+        filterPanel.add(rarityCombo);
+        filterPanel.add(new JLabel("From:"));
+        filterPanel.add(dateFromField);
+        filterPanel.add(new JLabel("To:"));
+        filterPanel.add(dateToField);
+        JPanel northPanel = new JPanel(new GridLayout(2, 1));
+        northPanel.add(groupPanel);
+        northPanel.add(filterPanel);
+
+        DefaultTableModel model = new DefaultTableModel();
+        JTable table = new JTable(model);
+        JLabel status = new JLabel(" ");
+        JProgressBar loading = DataAccessExecutor.createLoadingIndicator();
+        JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        southPanel.add(loading);
+        southPanel.add(status);
+
+        DATA.submit(CACHE::supplierNames).whenComplete(DataAccessExecutor.onEdt((values, e) -> {
+            if (e == null) {
+                values.forEach(supplierCombo::addItem);
+            }
+        }));
+        DATA.submit(() -> distinctValues("category")).whenComplete(DataAccessExecutor.onEdt((values, e) -> {
+            if (e == null) {
+                values.forEach(categoryCombo::addItem);
+            }
+        }));
+        DATA.submit(() -> distinctValues("rarity")).whenComplete(DataAccessExecutor.onEdt((values, e) -> {
+            if (e == null) {
+                values.forEach(rarityCombo::addItem);
+            }
+        }));
+
+        // The first run loads the snapshot; later runs only read new changes
+        runButton.addActionListener(e -> {
+            List<SalesAnalytics.Dimension> dimensions = new ArrayList<>();
+            dimensions.add(SalesAnalytics.Dimension.values()[groupBy.getSelectedIndex()]);
+            if (thenBy.getSelectedIndex() > 0) {
+                dimensions.add(SalesAnalytics.Dimension.values()[thenBy.getSelectedIndex() - 1]);
+            }
+            String topChoice = (String) top.getSelectedItem();
+            SalesAnalytics.Query query = new SalesAnalytics.Query(dimensions,
+                    SalesAnalytics.Measure.values()[rankBy.getSelectedIndex()],
+                    topChoice.equals("All") ? 0 : Integer.parseInt(topChoice),
+                    dateFromField.getText().trim(), dateToField.getText().trim(),
+                    anyToNull((String) supplierCombo.getSelectedItem()),
+                    anyToNull((String) categoryCombo.getSelectedItem()),
+                    anyToNull((String) rarityCombo.getSelectedItem()));
+            DataAccessExecutor.setLoading(loading, true);
+            DATA.submitLatest(model, () -> SERVICE.analyze(query)).whenComplete(DataAccessExecutor.onEdt((result, ex) -> {
+                DataAccessExecutor.setLoading(loading, false);
+                if (ex != null) {
+                    JOptionPane.showMessageDialog(analyticsFrame, "Error running analysis: " + ex.getMessage());
+                    return;
+                }
+                model.setColumnCount(0);
+                model.setRowCount(0);
+                for (String column : result.columns) {
+                    model.addColumn(column);
+                }
+                for (Object[] row : result.rows) {
+                    Object[] shown = row.clone();
+                    shown[shown.length - 1] = String.format("$%.2f", (Double) row[row.length - 1]);
+                    model.addRow(shown);
+                }
+                status.setText(String.format("%d groups from %d sales in %.1f ms", result.rows.size(),
+                        result.salesScanned, result.nanos / 1e6));
+            }));
+        });
+
+        analyticsFrame.add(northPanel, BorderLayout.NORTH);
+        analyticsFrame.add(new JScrollPane(table), BorderLayout.CENTER);
+        analyticsFrame.add(southPanel, BorderLayout.SOUTH);
+        analyticsFrame.setLocationRelativeTo(null);
+        analyticsFrame.setVisible(true);
+    }
+
+    private static String anyToNull(String choice) {
+        return choice == null || choice.equals(InventoryFilter.ANY) ? null : choice;
+    }
+
+    // Moves sales older than the horizon into the per-year archive files. They
+    // leave this window but stay in the report, its totals and analytics.
+    private static void archiveOldSales(JFrame parent, PagedTableModel model) {
+        String input = JOptionPane.showInputDialog(parent, "Archive sales older than how many days?",
+                SalesArchive.horizonDays());
+        if (input == null) {
+            return;
+        }
+        int days;
+        try {
+            days = Integer.parseInt(input.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(parent, "Please enter a whole number of days.");
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(days);
+        DATA.submit(() -> Metrics.time("archive.run", () -> ARCHIVE.archiveBefore(cutoff)))
+            .whenComplete(DataAccessExecutor.onEdt((moved, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(parent, "Error archiving sales: " + e.getMessage());
+                    return;
+                }
+                if (moved.isEmpty()) {
+                    JOptionPane.showMessageDialog(parent, "No sales before " + cutoff + " to archive.");
+                    return;
+                }
+                model.refreshChanges();
+                StringBuilder message = new StringBuilder("Archived to " + ARCHIVE.getDirectory() + ":");
+                for (Map.Entry<Integer, Long> entry : moved.entrySet()) {
+                    message.append("\n").append(entry.getKey()).append(": ").append(entry.getValue()).append(" sales");
+                }
+                JOptionPane.showMessageDialog(parent, message.toString());
+            }));
+    }
+
+    private static void deleteSale(JTable table, PagedTableModel model) {
         int selectedRow = table.getSelectedRow();
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(null, "Please select a sale to delete.");
@@ -910,80 +1585,17 @@ public class InventoryManagementSystem {
                 "Delete Confirmation", JOptionPane.YES_NO_OPTION);
         
         if (option == JOptionPane.YES_OPTION) {
-            Connection conn = null;
-            PreparedStatement pstmt = null;
-            PreparedStatement deleteStmt = null;
-            ResultSet rs = null;
-            
-            try {
-                conn = connect();
-                
-                // Enable foreign keys and set timeout
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("PRAGMA foreign_keys = ON");
-                    stmt.execute("PRAGMA busy_timeout = 5000");
+            int id = Integer.parseInt(saleId.toString());
+            DATA.submit(() -> SERVICE.removeSale(id)).whenComplete(DataAccessExecutor.onEdt((deleted, e) -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(null, "Error Deleting Sale: " + e.getMessage());
+                    return;
                 }
-                
-                conn.setAutoCommit(false);
-
-                // Get card info first
-                String getCardInfoSQL = "SELECT card_id, quantity FROM Sales WHERE sale_id = ?";
-                pstmt = conn.prepareStatement(getCardInfoSQL);
-                pstmt.setInt(1, Integer.parseInt(saleId.toString()));
-                rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    int cardId = rs.getInt("card_id");
-                    int quantity = rs.getInt("quantity");
-
-                    // Update card quantity
-                    String updateQuantitySQL = "UPDATE Cards SET quantity = quantity + ? WHERE card_id = ?";
-                    try (PreparedStatement updateStmt = conn.prepareStatement(updateQuantitySQL)) {
-                        updateStmt.setInt(1, quantity);
-                        updateStmt.setInt(2, cardId);
-                        updateStmt.executeUpdate();
-                    }
-
-                    // Delete the sale
-                    String deleteSaleSQL = "DELETE FROM Sales WHERE sale_id = ?";
-                    deleteStmt = conn.prepareStatement(deleteSaleSQL);
-                    deleteStmt.setInt(1, Integer.parseInt(saleId.toString()));
-                    deleteStmt.executeUpdate();
-
-                    conn.commit();
-                    model.removeRow(selectedRow);
+                if (deleted) {
+                    model.refreshChanges();
                     JOptionPane.showMessageDialog(null, "Sale Deleted Successfully!");
                 }
-            } catch (SQLException e) {
-                if (conn != null) {
-                    try {
-                        conn.rollback();
-                    } catch (SQLException ex) {
-                        ex.printStackTrace();
-                    }
-                }
-                JOptionPane.showMessageDialog(null, "Error Deleting Sale: " + e.getMessage());
-            } finally {
-                try {
-                    if (rs != null) rs.close();
-                    if (pstmt != null) pstmt.close();
-                    if (deleteStmt != null) deleteStmt.close();
-                    if (conn != null) {
-                        conn.setAutoCommit(true);
-                        conn.close();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
-
-    private static void configureDatabaseConnection(Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute("PRAGMA foreign_keys = ON");
-            stmt.execute("PRAGMA busy_timeout = 5000");
-            stmt.execute("PRAGMA journal_mode = WAL");
+            }));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,526 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// The inventory's data operations with no Swing in them, shared by the desktop
+// windows and the HTTP API. Reads go to pool readers so they run in parallel;
+// writes queue on the single writer and keep the lookup cache in step.
+// The hot operations are timed into Metrics as service.<operation>.
+public class InventoryService {
+
+    public static final class Card {
+        public final int id;
+        public final String name;
+        public final String category;
+        public final String rarity;
+        public final double value;
+        public final int quantity;
+
+        public Card(int id, String name, String category, String rarity, double value, int quantity) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.rarity = rarity;
+            this.value = value;
+            this.quantity = quantity;
+        }
+    }
+
+    public static final class Supplier {
+        public final int id;
+        public final String name;
+        public final String contact;
+        public final String email;
+        public final String phone;
+
+        public Supplier(int id, String name, String contact, String email, String phone) {
+            this.id = id;
+            this.name = name;
+            this.contact = contact;
+            this.email = email;
+            this.phone = phone;
+        }
+    }
+
+    public static final class SupplierPrice {
+        public final int supplierId;
+        public final String supplierName;
+        public final double price;
+        public final String lastUpdated;
+
+        SupplierPrice(int supplierId, String supplierName, double price, String lastUpdated) {
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+            this.price = price;
+            this.lastUpdated = lastUpdated;
+        }
+    }
+
+    public static final class Sale {
+        public final long id;
+        public final int cardId;
+        public final String cardName;
+        public final int supplierId;
+        public final String supplierName;
+        public final int quantity;
+        public final String saleDate;
+        public final double salePrice;
+
+        Sale(long id, int cardId, String cardName, int supplierId, String supplierName,
+                int quantity, String saleDate, double salePrice) {
+            this.id = id;
+            this.cardId = cardId;
+            this.cardName = cardName;
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+            this.quantity = quantity;
+            this.saleDate = saleDate;
+            this.salePrice = salePrice;
+        }
+    }
+
+    private static final int MAX_ATTEMPTS = 6;
+    private static final String CARD_COLUMNS = "SELECT card_id, name, category, rarity, value, quantity FROM Cards";
+    private static final String SUPPLIER_COLUMNS = "SELECT supplier_id, name, contact, email, phone FROM Suppliers";
+    private static final String SALE_COLUMNS =
+            "SELECT s.sale_id, s.card_id, c.name AS card_name, s.supplier_id, sup.name AS supplier_name, " +
+            "s.quantity, s.sale_date, s.sale_price " +
+            "FROM Sales s " +
+            "JOIN Cards c ON s.card_id = c.card_id " +
+            "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id";
+
+    private final ConnectionPool pool;
+    private final ReferenceDataCache cache;
+    private final StockReservation stock;
+    private final SalesReportEngine reports;
+    private final SalesAnalytics analytics = new SalesAnalytics();
+    private volatile GroupCommitWriter groupCommit;
+
+    public InventoryService(ConnectionPool pool, ReferenceDataCache cache) {
+        this.pool = pool;
+        this.cache = cache;
+        this.stock = new StockReservation(pool);
+        this.reports = new SalesReportEngine(pool);
+    }
+
+    // Sends recordSale and recordPrice through group commit; null turns it off
+    public void setGroupCommit(GroupCommitWriter groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    // Cards
+
+    // Keyset page of cards with card_id > afterId, in card_id order
+    public List<Card> listCards(InventoryFilter filter, long afterId, int limit) throws SQLException {
+        String conditions = filter.conditions();
+        String sql = CARD_COLUMNS + " WHERE card_id > ?" + (conditions.isEmpty() ? "" : " AND " + conditions)
+                + " ORDER BY card_id LIMIT ?";
+        List<Object> params = new ArrayList<>();
+        params.add(afterId);
+        params.addAll(filter.params());
+        params.add(limit);
+        return Metrics.time("service.listCards", () -> {
+            List<Card> cards = new ArrayList<>();
+            try (Connection conn = pool.reader(); PreparedStatement pstmt = prepare(conn, sql, params)) {
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    cards.add(readCard(rs));
+                }
+            }
+            return cards;
+        });
+    }
+
+    // Null if there is no such card
+    public Card getCard(int cardId) throws SQLException {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(CARD_COLUMNS + " WHERE card_id = ?")) {
+            pstmt.setInt(1, cardId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? readCard(rs) : null;
+        }
+    }
+
+    public int addCard(String name, String category, String rarity, double value, int quantity) throws SQLException {
+        requireName(name);
+        String sql = "INSERT INTO Cards(name, category, rarity, value, quantity) VALUES(?,?,?,?,?)";
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, category);
+            pstmt.setString(3, rarity);
+            pstmt.setDouble(4, value);
+            pstmt.setInt(5, quantity);
+            pstmt.executeUpdate();
+            int cardId = (int) ConnectionPool.generatedKey(pstmt);
+            cache.putCard(cardId, name, category, rarity);
+            return cardId;
+        }
+    }
+
+    // False if the card doesn't exist
+    public boolean updateCard(Card card) throws SQLException {
+        requireName(card.name);
+        String sql = "UPDATE Cards SET name=?, category=?, rarity=?, value=?, quantity=? WHERE card_id=?";
+        try (Connection conn = pool.writer(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, card.name);
+            pstmt.setString(2, card.category);
+            pstmt.setString(3, card.rarity);
+            pstmt.setDouble(4, card.value);
+            pstmt.setInt(5, card.quantity);
+            pstmt.setInt(6, card.id);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        cache.putCard(card.id, card.name, card.category, card.rarity);
+        return true;
+    }
+
+    // Sets only the fields given; null leaves a field as it is, so stock moved
+    // by a sale meanwhile is kept unless quantity itself is given. Returns the
+    // card as it now is, or null if there is no such card.
+    public Card patchCard(int cardId, String name, String category, String rarity, Double value, Integer quantity)
+            throws SQLException {
+        if (name != null) {
+            requireName(name);
+        }
+        List<String> columns = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        for (Object[] field : new Object[][] {{"name", name}, {"category", category}, {"rarity", rarity},
+                {"value", value}, {"quantity", quantity}}) {
+            if (field[1] != null) {
+                columns.add(field[0] + "=?");
+                params.add(field[1]);
+            }
+        }
+        params.add(cardId);
+        String sql = "UPDATE Cards SET " + String.join(", ", columns) + " WHERE card_id=?";
+        Card card = immediate(conn -> {
+            if (!columns.isEmpty()) {
+                try (PreparedStatement pstmt = prepare(conn, sql, params)) {
+                    if (pstmt.executeUpdate() == 0) {
+                        return null;
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(CARD_COLUMNS + " WHERE card_id = ?")) {
+                pstmt.setInt(1, cardId);
+                ResultSet rs = pstmt.executeQuery();
+                return rs.next() ? readCard(rs) : null;
+            }
+        });
+        if (card != null) {
+            cache.putCard(card.id, card.name, card.category, card.rarity);
+        }
+        return card;
+    }
+
+    public boolean deleteCard(int cardId) throws SQLException {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Cards WHERE card_id=?")) {
+            pstmt.setInt(1, cardId);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        cache.removeCard(cardId);
+        return true;
+    }
+
+    // Suppliers
+
+    public List<Supplier> listSuppliers(long afterId, int limit) throws SQLException {
+        String sql = SUPPLIER_COLUMNS + " WHERE supplier_id > ? ORDER BY supplier_id LIMIT ?";
+        List<Supplier> suppliers = new ArrayList<>();
+        try (Connection conn = pool.reader(); PreparedStatement pstmt = prepare(conn, sql, List.of(afterId, limit))) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                suppliers.add(readSupplier(rs));
+            }
+        }
+        return suppliers;
+    }
+
+    public Supplier getSupplier(int supplierId) throws SQLException {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(SUPPLIER_COLUMNS + " WHERE supplier_id = ?")) {
+            pstmt.setInt(1, supplierId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? readSupplier(rs) : null;
+        }
+    }
+
+    public int addSupplier(String name, String contact, String email, String phone) throws SQLException {
+        requireName(name);
+        String sql = "INSERT INTO Suppliers(name, contact, email, phone) VALUES(?,?,?,?)";
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, contact);
+            pstmt.setString(3, email);
+            pstmt.setString(4, phone);
+            pstmt.executeUpdate();
+            int supplierId = (int) ConnectionPool.generatedKey(pstmt);
+            cache.putSupplier(supplierId, name);
+            return supplierId;
+        }
+    }
+
+    public boolean updateSupplier(Supplier supplier) throws SQLException {
+        requireName(supplier.name);
+        String sql = "UPDATE Suppliers SET name=?, contact=?, email=?, phone=? WHERE supplier_id=?";
+        try (Connection conn = pool.writer(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, supplier.name);
+            pstmt.setString(2, supplier.contact);
+            pstmt.setString(3, supplier.email);
+            pstmt.setString(4, supplier.phone);
+            pstmt.setInt(5, supplier.id);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        cache.putSupplier(supplier.id, supplier.name);
+        return true;
+    }
+
+    public boolean deleteSupplier(int supplierId) throws SQLException {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Suppliers WHERE supplier_id=?")) {
+            pstmt.setInt(1, supplierId);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        cache.removeSupplier(supplierId);
+        return true;
+    }
+
+    // Prices
+
+    // Current price of a card at every supplier, cheapest first
+    public List<SupplierPrice> comparePrices(int cardId) throws SQLException {
+        String sql = "SELECT s.supplier_id, s.name, sp.price, sp.last_updated " +
+                "FROM Suppliers s " +
+                "JOIN SupplierPrices sp ON s.supplier_id = sp.supplier_id " +
+                "WHERE sp.card_id = ? " +
+                "ORDER BY sp.price ASC";
+        return Metrics.time("service.comparePrices", () -> {
+            List<SupplierPrice> prices = new ArrayList<>();
+            try (Connection conn = pool.reader(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, cardId);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    prices.add(new SupplierPrice(rs.getInt("supplier_id"), rs.getString("name"),
+                            rs.getDouble("price"), rs.getString("last_updated")));
+                }
+            }
+            return prices;
+        });
+    }
+
+    // One row per supplier and card; the old price is archived by trigger
+    public void recordPrice(int supplierId, int cardId, double price) throws SQLException {
+        String sql = "INSERT INTO SupplierPrices (supplier_id, card_id, price, last_updated) " +
+                "VALUES (?, ?, ?, date('now')) " +
+                "ON CONFLICT(supplier_id, card_id) DO UPDATE SET " +
+                "price = excluded.price, last_updated = excluded.last_updated";
+        GroupCommitWriter writes = groupCommit;
+        Metrics.time("service.recordPrice", () -> {
+            if (writes != null) {
+                return writes.execute(conn -> upsertPrice(conn, sql, supplierId, cardId, price));
+            }
+            try (Connection conn = pool.writer()) {
+                return upsertPrice(conn, sql, supplierId, cardId, price);
+            }
+        });
+    }
+
+    private static int upsertPrice(Connection conn, String sql, int supplierId, int cardId, double price)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, supplierId);
+            pstmt.setInt(2, cardId);
+            pstmt.setDouble(3, price);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    // Sales
+
+    // Newest first: a page of sales with sale_id < beforeId matching the query
+    public List<Sale> listSales(SalesReportQuery query, long beforeId, int limit) throws SQLException {
+        String sql = SALE_COLUMNS + query.whereClause() + " AND s.sale_id < ? ORDER BY s.sale_id DESC LIMIT ?";
+        List<Object> params = new ArrayList<>(query.params());
+        params.add(beforeId);
+        params.add(limit);
+        return Metrics.time("service.listSales", () -> {
+            List<Sale> sales = new ArrayList<>();
+            try (Connection conn = pool.reader(); PreparedStatement pstmt = prepare(conn, sql, params)) {
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    sales.add(new Sale(rs.getLong("sale_id"), rs.getInt("card_id"), rs.getString("card_name"),
+                            rs.getInt("supplier_id"), rs.getString("supplier_name"), rs.getInt("quantity"),
+                            rs.getString("sale_date"), rs.getDouble("sale_price")));
+                }
+            }
+            return sales;
+        });
+    }
+
+    // Under group commit with Durability.ENQUEUE the id isn't known yet and -1 is returned
+    public long recordSale(int cardId, int supplierId, int quantity, double price) throws SQLException {
+        GroupCommitWriter writes = groupCommit;
+        if (writes == null) {
+            return Metrics.time("service.recordSale", () -> stock.recordSale(cardId, supplierId, quantity, price));
+        }
+        if (quantity <= 0) {
+            throw new SQLDataException("Quantity must be greater than zero");
+        }
+        Long saleId = Metrics.time("service.recordSale", () -> writes.execute(conn -> {
+            StockReservation.reserve(conn, cardId, quantity);
+            return StockReservation.insertSale(conn, cardId, supplierId, quantity, price);
+        }));
+        return saleId == null ? -1 : saleId;
+    }
+
+    // Restocks the card and deletes the sale in one transaction. Lines of an
+    // order are refused; the order is undone as a whole by reverseOrder.
+    public boolean removeSale(long saleId) throws SQLException {
+        return Metrics.time("service.removeSale", () -> immediate(conn -> restockAndDelete(conn, saleId)));
+    }
+
+    private static boolean restockAndDelete(Connection conn, long saleId) throws SQLException {
+        int cardId;
+        int quantity;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT card_id, quantity, order_id FROM Sales WHERE sale_id = ?")) {
+            pstmt.setLong(1, saleId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return false;
+            }
+            cardId = rs.getInt("card_id");
+            quantity = rs.getInt("quantity");
+            long orderId = rs.getLong("order_id");
+            if (!rs.wasNull()) {
+                throw new SQLIntegrityConstraintViolationException(
+                        "Sale " + saleId + " is part of order " + orderId + "; reverse the order instead");
+            }
+        }
+        if (quantity < 0) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Sale " + saleId + " is a compensating line and cannot be deleted");
+        }
+
+        try (PreparedStatement restock = conn.prepareStatement(
+                "UPDATE Cards SET quantity = quantity + ? WHERE card_id = ? AND quantity + ? >= 0")) {
+            restock.setInt(1, quantity);
+            restock.setInt(2, cardId);
+            restock.setInt(3, quantity);
+            if (restock.executeUpdate() == 0) {
+                throw new SQLIntegrityConstraintViolationException("Card " + cardId + " does not exist");
+            }
+        }
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM Sales WHERE sale_id = ?")) {
+            delete.setLong(1, saleId);
+            delete.executeUpdate();
+        }
+        return true;
+    }
+
+
+
+    // Reports
+
+    public SalesReportEngine.Summary summarize(SalesReportQuery query) throws SQLException {
+        return Metrics.time("service.reportSummary", () -> reports.summarize(query));
+    }
+
+    public List<Object[]> breakdown(SalesReportQuery query, SalesReportEngine.Breakdown breakdown)
+            throws SQLException {
+        return Metrics.time("service.reportBreakdown", () -> reports.breakdown(query, breakdown));
+    }
+
+    // Ad-hoc group-by over the in-memory snapshot, brought up to date first
+    public SalesAnalytics.Result analyze(SalesAnalytics.Query query) throws SQLException {
+        analytics.refresh(pool);
+        return analytics.query(query);
+    }
+
+    private interface WriteTask<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    // Runs task on the writer under BEGIN IMMEDIATE, which takes the write lock
+    // before anything is read, so nothing changes between the task's reads and
+    // its writes. SQLITE_BUSY is retried like StockReservation.
+    private <T> T immediate(WriteTask<T> task) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = pool.writer()) {
+                execute(conn, "BEGIN IMMEDIATE");
+                try {
+                    T result = task.run(conn);
+                    execute(conn, "COMMIT");
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    rollback(conn);
+                    throw e;
+                }
+            } catch (SQLException e) {
+                if (!StockReservation.isBusy(e) || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                StockReservation.backoff(attempt);
+            }
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            execute(conn, "ROLLBACK");
+        } catch (SQLException e) {
+            // SQLite already rolled back after the failure
+        }
+    }
+
+    private static void requireName(String name) throws SQLException {
+        if (name == null || name.trim().isEmpty()) {
+            throw new SQLDataException("Name is required");
+        }
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    // Maps a row selected with CARD_COLUMNS
+    private static Card readCard(ResultSet rs) throws SQLException {
+        return new Card(rs.getInt("card_id"), rs.getString("name"), rs.getString("category"),
+                rs.getString("rarity"), rs.getDouble("value"), rs.getInt("quantity"));
+    }
+
+    private static Supplier readSupplier(ResultSet rs) throws SQLException {
+        return new Supplier(rs.getInt("supplier_id"), rs.getString("name"), rs.getString("contact"),
+                rs.getString("email"), rs.getString("phone"));
+    }
+}
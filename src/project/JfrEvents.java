@@ -0,0 +1,86 @@
+package project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Custom Flight Recorder events. They cost next to nothing unless a recording
+// is running (see FlightRecording), and show up in JMC under "Inventory".
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    @Name("project.SqlStatement")
+    @Label("SQL Statement")
+    @Category({"Inventory", "SQL"})
+    @Description("A prepared statement from execute until its results were closed")
+    static final class SqlStatement extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Rows")
+        @Description("Rows read for a query, rows changed for an update or batch")
+        long rows;
+
+        @Label("Execute Time")
+        @Description("Time inside execute, which includes waiting on busy_timeout for a lock")
+        @Timespan
+        long executeNanos;
+
+        @Label("Read Only")
+        boolean readOnly;
+    }
+
+    @Name("project.ConnectionWait")
+    @Label("Connection Wait")
+    @Category({"Inventory", "SQL"})
+    @Description("Waiting for a pooled connection")
+    static final class ConnectionWait extends Event {
+        @Label("Read Only")
+        boolean readOnly;
+    }
+
+    @Name("project.BusyRetry")
+    @Label("Busy Retry")
+    @Category({"Inventory", "SQL"})
+    @Description("Backing off after SQLITE_BUSY before retrying a write transaction")
+    static final class BusyRetry extends Event {
+        @Label("Attempt")
+        int attempt;
+    }
+
+    @Name("project.TableLoad")
+    @Label("Table Load")
+    @Category({"Inventory", "UI"})
+    @Description("Loading rows for a table model off the EDT")
+    static final class TableLoad extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Page")
+        @Description("Page number for paged tables, -1 for a full load")
+        int page;
+
+        @Label("Rows")
+        long rows;
+    }
+
+    @Name("project.EdtStall")
+    @Label("EDT Stall")
+    @Category({"Inventory", "UI"})
+    @Description("The Event Dispatch Thread did not respond for longer than the threshold")
+    @StackTrace(false)
+    static final class EdtStall extends Event {
+        @Label("EDT Stack")
+        @Description("What the EDT was doing when the stall was first noticed")
+        String edtStack;
+    }
+}
@@ -0,0 +1,212 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Replays a mixed shop workload against a database with N concurrent workers:
+// sales (on Zipf-hot cards, like DataGenerator's), supplier price updates and
+// sales report queries, in configurable proportions. Prints throughput every
+// few seconds and a per-operation latency report at the end.
+//
+// java project.LoadDriver <database> [workers=8] [seconds=30] [sales=70] [prices=20]
+//     [reports=10] [skew=1.1] [readers=4] [groupCommit=off|commit|enqueue] [linger=2]
+//
+// Fill the database with DataGenerator first.
+public class LoadDriver {
+
+    private static final int REPORT_EVERY_SECONDS = 5;
+
+    enum Kind { SALE, PRICE, REPORT }
+
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadDriver <database> [key=value ...]");
+            System.exit(2);
+        }
+        int workers = 8;
+        int seconds = 30;
+        int[] weights = {70, 20, 10};
+        double skew = 1.1;
+        int readers = 4;
+        String groupCommit = "off";
+        int lingerMillis = 2;
+        for (int i = 1; i < args.length; i++) {
+            String[] kv = args[i].split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected key=value, got " + args[i]);
+            }
+            switch (kv[0]) {
+                case "workers": workers = Integer.parseInt(kv[1]); break;
+                case "seconds": seconds = Integer.parseInt(kv[1]); break;
+                case "sales": weights[0] = Integer.parseInt(kv[1]); break;
+                case "prices": weights[1] = Integer.parseInt(kv[1]); break;
+                case "reports": weights[2] = Integer.parseInt(kv[1]); break;
+                case "skew": skew = Double.parseDouble(kv[1]); break;
+                case "readers": readers = Integer.parseInt(kv[1]); break;
+                case "groupCommit": groupCommit = kv[1]; break;
+                case "linger": lingerMillis = Integer.parseInt(kv[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + kv[0]);
+            }
+        }
+        int totalWeight = weights[0] + weights[1] + weights[2];
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("At least one of sales, prices, reports must be positive");
+        }
+
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + args[0], readers);
+        GroupCommitWriter writes = groupCommit.equals("off") ? null : new GroupCommitWriter(pool,
+                GroupCommitWriter.Durability.valueOf(groupCommit.toUpperCase(Locale.ROOT)), lingerMillis, 256);
+        try {
+            int cards = (int) queryLong(pool, "SELECT COUNT(*) FROM Cards");
+            int suppliers = (int) queryLong(pool, "SELECT COUNT(*) FROM Suppliers");
+            if (cards == 0 || suppliers == 0) {
+                System.err.println("The database has no cards or suppliers; run DataGenerator first");
+                System.exit(2);
+            }
+            InventoryService service = new InventoryService(pool, new ReferenceDataCache(pool, 250_000));
+            service.setGroupCommit(writes);
+            DataGenerator.CardPicker picker = new DataGenerator.CardPicker(cards, skew);
+            Stats[] stats = {new Stats(), new Stats(), new Stats()};
+
+            System.out.printf("%d workers for %ds, mix sales/prices/reports = %d/%d/%d, %,d cards, %d suppliers%n",
+                    workers, seconds, weights[0], weights[1], weights[2], cards, suppliers);
+
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            SplittableRandom seeds = new SplittableRandom(7);
+            for (int w = 0; w < workers; w++) {
+                SplittableRandom random = seeds.split();
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (System.nanoTime() < deadline) {
+                        int roll = random.nextInt(totalWeight);
+                        Kind kind = roll < weights[0] ? Kind.SALE
+                                : roll < weights[0] + weights[1] ? Kind.PRICE : Kind.REPORT;
+                        Stats s = stats[kind.ordinal()];
+                        long began = System.nanoTime();
+                        try {
+                            runOne(service, kind, picker, suppliers, random);
+                            s.latency.record(System.nanoTime() - began);
+                        } catch (SQLException e) {
+                            // Only the service's own rule checks are rejections, e.g. a card
+                            // sold out; pool timeouts, busy and driver failures are errors
+                            if (e instanceof SQLDataException
+                                    || e instanceof SQLIntegrityConstraintViolationException) {
+                                s.rejected.incrementAndGet();
+                            } else {
+                                s.errors.incrementAndGet();
+                            }
+                        }
+                    }
+                }, "load-" + w);
+                threads.add(worker);
+                worker.start();
+            }
+
+            long began = System.nanoTime();
+            start.countDown();
+            long lastOps = 0;
+            long lastTime = began;
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(Math.min(REPORT_EVERY_SECONDS * 1000L,
+                        Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+                long ops = 0;
+                for (Stats s : stats) {
+                    ops += s.latency.getCount();
+                }
+                long now = System.nanoTime();
+                System.out.printf("  %5.1fs  %8.0f ops/sec  pool: %s%n", (now - began) / 1e9,
+                        (ops - lastOps) / ((now - lastTime) / 1e9), pool.stats());
+                lastOps = ops;
+                lastTime = now;
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            if (writes != null) {
+                writes.close();  // Flush what was acknowledged on enqueue
+            }
+            double elapsed = (System.nanoTime() - began) / 1e9;
+            print(stats, elapsed);
+            if (writes != null) {
+                long batches = Metrics.counter("groupCommit.batches").get();
+                System.out.printf("group commit: %d writes in %d batches, %.1f per batch, %d lost%n",
+                        Metrics.counter("groupCommit.writes").get(), batches,
+                        Metrics.counter("groupCommit.writes").get() / (double) Math.max(1, batches),
+                        Metrics.counter("groupCommit.lostWrites").get());
+            }
+        } finally {
+            if (writes != null) {
+                writes.close();
+            }
+            pool.close();
+        }
+    }
+
+    private static void runOne(InventoryService service, Kind kind, DataGenerator.CardPicker picker, int suppliers,
+            SplittableRandom random) throws SQLException {
+        switch (kind) {
+            case SALE:
+                service.recordSale(picker.next(random), 1 + random.nextInt(suppliers),
+                        random.nextInt(10) == 0 ? 2 : 1, Math.round((0.5 + random.nextDouble() * 20) * 100) / 100.0);
+                break;
+            case PRICE:
+                service.recordPrice(1 + random.nextInt(suppliers), picker.next(random),
+                        Math.round((0.5 + random.nextDouble() * 20) * 100) / 100.0);
+                break;
+            case REPORT:
+                LocalDate from = LocalDate.now().minusDays(random.nextInt(365));
+                SalesReportQuery query = new SalesReportQuery(null, from.toString(), from.plusDays(30).toString());
+                service.summarize(query);
+                service.breakdown(query, SalesReportEngine.Breakdown.values()[random.nextInt(3)]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void print(Stats[] stats, double elapsed) {
+        System.out.printf("%n%-8s %10s %10s %9s %9s %9s %9s %9s %9s%n",
+                "op", "ops", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "rejected", "errors");
+        long total = 0;
+        for (Kind kind : Kind.values()) {
+            Stats s = stats[kind.ordinal()];
+            LatencyHistogram h = s.latency;
+            total += h.getCount();
+            System.out.printf("%-8s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9d %9d%n",
+                    kind.name().toLowerCase(), h.getCount(), h.getCount() / elapsed,
+                    h.percentileNanos(50) / 1e6, h.percentileNanos(99) / 1e6, h.percentileNanos(99.9) / 1e6,
+                    h.getMaxNanos() / 1e6, s.rejected.get(), s.errors.get());
+        }
+        System.out.printf("%-8s %10d %10.1f%n", "total", total, total / elapsed);
+    }
+
+    private static long queryLong(ConnectionPool pool, String sql) throws SQLException {
+        try (Connection conn = pool.reader(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package project;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Process-wide timers, counters and gauges. Timers keep a LatencyHistogram so
+// percentiles are available without storing samples. Everything is readable
+// over JMX (project:type=Metrics), as Prometheus text from /metrics on the HTTP
+// API, or from a file rewritten periodically when -Dinventory.metrics.file is set.
+//
+// SQL slower than -Dinventory.slowQueryMillis (default 200) is logged with its text.
+public final class Metrics {
+
+    private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+    private static final Logger SLOW_LOG = Logger.getLogger("project.slowquery");
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final long SLOW_QUERY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("inventory.slowQueryMillis", 200));
+    private static final long FILE_EXPORT_SECONDS = Long.getLong("inventory.metrics.fileSeconds", 15);
+
+    private static final Map<String, LatencyHistogram> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, AtomicLong> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentSkipListMap<>();
+    private static boolean installed;
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public static AtomicLong counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new AtomicLong());
+    }
+
+    // Replaces any gauge already registered under the name
+    public static void gauge(String name, DoubleSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    // Runs the task and records how long it took, failed or not
+    public static <T> T time(String name, DataAccessExecutor.SqlTask<T> task) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return task.run();
+        } catch (SQLException | RuntimeException e) {
+            counter(name + ".errors").incrementAndGet();
+            throw e;
+        } finally {
+            timer(name).record(System.nanoTime() - start);
+        }
+    }
+
+    static void slowQuery(String sql, long nanos) {
+        if (nanos >= SLOW_QUERY_NANOS) {
+            counter("sql.slow").incrementAndGet();
+            SLOW_LOG.warning(String.format(Locale.ROOT, "Slow query (%.1f ms): %s", nanos / 1e6, sql));
+        }
+    }
+
+    // Registers the JMX bean and, if configured, starts the file exporter. Safe to call twice.
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("project:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(), name);
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Could not register metrics MBean", e);
+        }
+        String file = System.getProperty("inventory.metrics.file");
+        if (file != null && !file.isEmpty()) {
+            startFileExporter(Paths.get(file), FILE_EXPORT_SECONDS);
+        }
+    }
+
+    // Rewrites the file atomically so a textfile collector never reads half of it
+    public static void startFileExporter(Path file, long periodSeconds) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-file-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(tmp, prometheus().getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not write metrics to " + file, e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Prometheus text exposition format; timers become summaries in seconds
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, LatencyHistogram> entry : TIMERS.entrySet()) {
+            String name = metricName(entry.getKey()) + "_seconds";
+            LatencyHistogram h = entry.getValue();
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double q : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(q).append("\"} ")
+                        .append(seconds(h.percentileNanos(q * 100))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(h.getTotalNanos())).append('\n');
+            out.append(name).append("_count ").append(h.getCount()).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            String name = metricName(entry.getKey()) + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : GAUGES.entrySet()) {
+            String name = metricName(entry.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(entry.getValue().getAsDouble()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String metricName(String name) {
+        return "inventory_" + name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    // Flat JMX view: <timer>.count/.meanMs/.p50Ms/.p99Ms/.maxMs, counters and gauges
+    private static final class MetricsBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            int dot = attribute.lastIndexOf('.');
+            if (dot > 0) {
+                LatencyHistogram h = TIMERS.get(attribute.substring(0, dot));
+                if (h != null) {
+                    switch (attribute.substring(dot + 1)) {
+                        case "count": return (double) h.getCount();
+                        case "meanMs": return h.getMeanNanos() / 1e6;
+                        case "p50Ms": return h.percentileNanos(50) / 1e6;
+                        case "p99Ms": return h.percentileNanos(99) / 1e6;
+                        case "maxMs": return h.getMaxNanos() / 1e6;
+                        default: break;
+                    }
+                }
+            }
+            AtomicLong counter = COUNTERS.get(attribute);
+            if (counter != null) {
+                return (double) counter.get();
+            }
+            DoubleSupplier gauge = GAUGES.get(attribute);
+            if (gauge != null) {
+                return gauge.getAsDouble();
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Skipped, as the JMX contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String timer : TIMERS.keySet()) {
+                for (String stat : new String[] {"count", "meanMs", "p50Ms", "p99Ms", "maxMs"}) {
+                    attributes.add(attribute(timer + "." + stat));
+                }
+            }
+            for (String counter : COUNTERS.keySet()) {
+                attributes.add(attribute(counter));
+            }
+            for (String gauge : GAUGES.keySet()) {
+                attributes.add(attribute(gauge));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Inventory metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name) {
+            return new MBeanAttributeInfo(name, "double", name, true, false, false);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Multi-line sales committed as one order: a single transaction with one
+// Orders header, batched conditional stock decrements and batched Sales inserts.
+// Lines with a negative quantity are the compensating entries of a reversal.
+public class OrderService {
+
+    private static final int MAX_ATTEMPTS = 6;
+
+    // Order headers with totals derived from their lines, newest first. The
+    // compensating lines of a reversed order are left out, so it still shows
+    // what was sold.
+    public static final String ORDERS_QUERY =
+            "SELECT o.order_id, o.order_date, o.status, COUNT(s.sale_id) AS line_count, " +
+            "COALESCE(SUM(s.quantity), 0) AS quantity, COALESCE(SUM(s.quantity * s.sale_price), 0) AS total " +
+            "FROM Orders o LEFT JOIN Sales s ON s.order_id = o.order_id AND s.quantity > 0 " +
+            "GROUP BY o.order_id ORDER BY o.order_id DESC";
+
+    public static final class LineItem {
+        final int cardId;
+        final String cardName;
+        final int supplierId;
+        final String supplierName;
+        final int quantity;
+        final double price;
+
+        public LineItem(int cardId, String cardName, int supplierId, String supplierName, int quantity, double price) {
+            this.cardId = cardId;
+            this.cardName = cardName;
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        public double total() {
+            return quantity * price;
+        }
+
+        public Object[] toRow() {
+            return new Object[] { cardName, supplierName, quantity, String.format("$%.2f", price),
+                    String.format("$%.2f", total()) };
+        }
+    }
+
+    private final ConnectionPool pool;
+
+    public OrderService(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Commits every line or none of them; returns the new order_id
+    public long placeOrder(List<LineItem> lines) throws SQLException {
+        if (lines.isEmpty()) {
+            throw new SQLDataException("The order has no lines");
+        }
+        // Lines for the same card are reserved together so their sum is checked
+        Map<Integer, Integer> perCard = new LinkedHashMap<>();
+        for (LineItem line : lines) {
+            if (line.quantity <= 0) {
+                throw new SQLDataException("Quantity must be greater than zero for " + line.cardName);
+            }
+            perCard.merge(line.cardId, line.quantity, Integer::sum);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = pool.writer()) {
+                conn.setAutoCommit(false);
+                try {
+                    long orderId = insertHeader(conn);
+                    reserveAll(conn, perCard);
+                    insertLines(conn, orderId, lines);
+                    conn.commit();
+                    return orderId;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (!StockReservation.isBusy(e) || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                StockReservation.backoff(attempt);
+            }
+        }
+    }
+
+    private static long insertHeader(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Orders(order_date) VALUES(date('now'))",
+                Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.executeUpdate();
+            return ConnectionPool.generatedKey(pstmt);
+        }
+    }
+
+    private static void reserveAll(Connection conn, Map<Integer, Integer> perCard) throws SQLException {
+        String reserveSQL = "UPDATE Cards SET quantity = quantity - ? WHERE card_id = ? AND quantity >= ?";
+        List<Integer> cardIds = new ArrayList<>(perCard.keySet());
+        int[] counts;
+        try (PreparedStatement pstmt = conn.prepareStatement(reserveSQL)) {
+            for (int cardId : cardIds) {
+                int quantity = perCard.get(cardId);
+                pstmt.setInt(1, quantity);
+                pstmt.setInt(2, cardId);
+                pstmt.setInt(3, quantity);
+                pstmt.addBatch();
+            }
+            counts = pstmt.executeBatch();
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                // Re-run the single-card path to get the precise reason
+                int cardId = cardIds.get(i);
+                StockReservation.reserve(conn, cardId, perCard.get(cardId));
+            }
+        }
+    }
+
+    private static void insertLines(Connection conn, long orderId, List<LineItem> lines) throws SQLException {
+        String insertSaleSQL = "INSERT INTO Sales(card_id, supplier_id, quantity, sale_date, sale_price, order_id) " +
+                "VALUES(?, ?, ?, date('now'), ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSaleSQL)) {
+            for (LineItem line : lines) {
+                pstmt.setInt(1, line.cardId);
+                pstmt.setInt(2, line.supplierId);
+                pstmt.setInt(3, line.quantity);
+                pstmt.setDouble(4, line.price);
+                pstmt.setLong(5, orderId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    // Puts every line back in stock and marks the order reversed. The lines stay;
+    // each gets a compensating line with the opposite quantity, dated today, so
+    // reports net the order out from the day it was reversed. Returns the number
+    // of lines reversed.
+    public int reverseOrder(long orderId) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = pool.writer()) {
+                conn.setAutoCommit(false);
+                try {
+                    int reversed = reverse(conn, orderId);
+                    conn.commit();
+                    return reversed;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (!StockReservation.isBusy(e) || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                StockReservation.backoff(attempt);
+            }
+        }
+    }
+
+    private static int reverse(Connection conn, long orderId) throws SQLException {
+        // The status update comes first so it takes the write lock before the check
+        try (PreparedStatement status = conn.prepareStatement(
+                "UPDATE Orders SET status = 'REVERSED' WHERE order_id = ? AND status <> 'REVERSED'")) {
+            status.setLong(1, orderId);
+            if (status.executeUpdate() == 0) {
+                try (PreparedStatement check = conn.prepareStatement("SELECT 1 FROM Orders WHERE order_id = ?")) {
+                    check.setLong(1, orderId);
+                    if (!check.executeQuery().next()) {
+                        throw new SQLIntegrityConstraintViolationException("Order " + orderId + " does not exist");
+                    }
+                }
+                throw new SQLIntegrityConstraintViolationException("Order " + orderId + " has already been reversed");
+            }
+        }
+
+        String restockSQL = "UPDATE Cards SET quantity = quantity + " +
+                "(SELECT SUM(s.quantity) FROM Sales s WHERE s.order_id = ? AND s.card_id = Cards.card_id) " +
+                "WHERE card_id IN (SELECT card_id FROM Sales WHERE order_id = ?)";
+        try (PreparedStatement restock = conn.prepareStatement(restockSQL)) {
+            restock.setLong(1, orderId);
+            restock.setLong(2, orderId);
+            restock.executeUpdate();
+        }
+
+        String compensateSQL = "INSERT INTO Sales(card_id, supplier_id, quantity, sale_date, sale_price, order_id) " +
+                "SELECT card_id, supplier_id, -quantity, date('now'), sale_price, order_id " +
+                "FROM Sales WHERE order_id = ? AND quantity > 0";
+        try (PreparedStatement compensate = conn.prepareStatement(compensateSQL)) {
+            compensate.setLong(1, orderId);
+            return compensate.executeUpdate();
+        }
+    }
+}
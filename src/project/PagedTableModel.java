@@ -0,0 +1,463 @@
+package project;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Table model that only holds the pages the user is looking at. Pages are read
+// with keyset pagination on an integer key column (WHERE key > last ORDER BY key
+// LIMIT n), kept in a small LRU, and the neighbouring pages are prefetched so
+// scrolling rarely shows an empty row. The row count is fetched in the background.
+// An optional filter and sort column are pushed into the SQL, so the database
+// does the filtering and ordering through its indexes rather than the table.
+// With a change table set, refreshChanges() reads the ChangeLog since the last
+// load and patches only the rows that changed.
+@SuppressWarnings("serial")  // holds a pool and executor; never serialized
+public class PagedTableModel extends AbstractTableModel {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 32;
+    // More changed rows than this and a plain refresh() is cheaper
+    private static final int MAX_DELTA_ROWS = PAGE_SIZE;
+
+    private final ConnectionPool pool;
+    private final DataAccessExecutor data;
+    private final String[] columns;
+    private final String selectSql;
+    private final String countSql;
+    private final String keyColumn;
+    private final boolean descending;
+    private final DataAccessExecutor.RowMapper mapper;
+    private String[] sortExpressions;
+    private String changeTable;
+
+    // Everything below is only touched on the EDT
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // Last row of each loaded page, so the next page can seek straight past it
+    private final Map<Integer, PageEnd> pageEnds = new HashMap<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private int rowCount;
+    private int generation;
+    private JComponent loadingIndicator;
+    private String filter = "";
+    private List<Object> filterParams = List.of();
+    private int sortColumn = -1;
+    private boolean sortDescending;
+    // ChangeLog seq the cached rows reflect, -1 until a refresh has completed
+    private long version = -1;
+
+    private static final class PageEnd {
+        final Object sortValue;
+        final long key;
+
+        PageEnd(Object sortValue, long key) {
+            this.sortValue = sortValue;
+            this.key = key;
+        }
+    }
+
+    private static final class Counted {
+        final int rows;
+        final long version;
+
+        Counted(int rows, long version) {
+            this.rows = rows;
+            this.version = version;
+        }
+    }
+
+    private static final class Delta {
+        final ChangeTracker.Changes changes;
+        final Map<Long, Object[]> rows;
+
+        Delta(ChangeTracker.Changes changes, Map<Long, Object[]> rows) {
+            this.changes = changes;
+            this.rows = rows;
+        }
+    }
+
+    // selectSql is a SELECT ... FROM ... without WHERE/ORDER BY. The mapper must
+    // put the key column first in each row so page boundaries can be remembered.
+    public PagedTableModel(ConnectionPool pool, DataAccessExecutor data, String[] columns, String selectSql,
+            String countSql, String keyColumn, boolean descending, DataAccessExecutor.RowMapper mapper) {
+        this.pool = pool;
+        this.data = data;
+        this.columns = columns;
+        this.selectSql = selectSql;
+        this.countSql = countSql;
+        this.keyColumn = keyColumn;
+        this.descending = descending;
+        this.mapper = mapper;
+    }
+
+    public void setLoadingIndicator(JComponent loadingIndicator) {
+        this.loadingIndicator = loadingIndicator;
+    }
+
+    // SQL expression to ORDER BY for each column, null where a column can't be
+    // sorted. The mapper must return the raw column value at the same index
+    // (getObject, not getInt/getDouble, which turn NULL into 0).
+    public void setSortExpressions(String... sortExpressions) {
+        this.sortExpressions = sortExpressions;
+    }
+
+    // The table whose ChangeLog entries refreshChanges() follows; rows are
+    // matched to it by the key column
+    public void setChangeTable(String changeTable) {
+        this.changeTable = changeTable;
+    }
+
+    // conditions is ANDed into every page and count query; empty for no filter
+    public void setFilter(String conditions, List<Object> params) {
+        filter = conditions;
+        filterParams = params;
+        refresh();
+    }
+
+    // Sorts by the column, or flips the direction if it is already the sort
+    // column. Returns false if the column isn't sortable.
+    public boolean toggleSort(int column) {
+        if (sortExpressions == null || column >= sortExpressions.length || sortExpressions[column] == null) {
+            return false;
+        }
+        sortDescending = column == sortColumn && !sortDescending;
+        sortColumn = column;
+        refresh();
+        return true;
+    }
+
+    // Drops every cached page and recounts; call after a filter change
+    public void refresh() {
+        dropPages();
+        version = -1;
+        int gen = generation;
+        String where = filter;
+        List<Object> params = filterParams;
+        String table = changeTable;
+        DataAccessExecutor.setLoading(loadingIndicator, true);
+        data.submitLatest(this, () -> Metrics.time("ui.rowCount", () -> {
+            // Version first: a change landing in between is just applied twice
+            long at = table == null ? -1 : currentVersion();
+            return new Counted(count(where, params), at);
+        })).whenComplete(DataAccessExecutor.onEdt((counted, e) -> {
+            if (gen != generation) {
+                return;
+            }
+            DataAccessExecutor.setLoading(loadingIndicator, false);
+            if (e != null) {
+                JOptionPane.showMessageDialog(null, "Error loading data: " + e.getMessage());
+                return;
+            }
+            rowCount = counted.rows;
+            version = counted.version;
+            fireTableDataChanged();
+        }));
+    }
+
+    // Call after writes. Edited rows are re-read by key and patched in place;
+    // inserts and deletes adjust the row count and reload only the pages on
+    // screen. Falls back to refresh() when there is no change table, a filter
+    // makes the new count unknowable, or too much changed.
+    public void refreshChanges() {
+        if (changeTable == null || version < 0) {
+            refresh();
+            return;
+        }
+        int gen = generation;
+        long since = version;
+        String where = filter;
+        List<Object> params = filterParams;
+        data.submitLatest(this, () -> Metrics.time("ui.deltaLoad", () -> loadChanges(since, where, params)))
+                .whenComplete(DataAccessExecutor.onEdt((delta, e) -> {
+            if (gen != generation) {
+                return;
+            }
+            if (e != null) {
+                refresh();
+                return;
+            }
+            applyChanges(delta);
+        }));
+    }
+
+    private void applyChanges(Delta delta) {
+        ChangeTracker.Changes changes = delta.changes;
+        if (!changes.complete || changes.size() > MAX_DELTA_ROWS) {
+            refresh();
+            return;
+        }
+        Map<Long, Integer> cached = cachedRowIndexes();
+        boolean structural = !changes.inserted.isEmpty() || changes.removed() > 0;
+        for (long key : changes.updated) {
+            Object[] row = delta.rows.get(key);
+            Integer index = cached.get(key);
+            if (index == null) {
+                // Off screen; only matters if it could have moved into view
+                structural |= sortColumn >= 0 || !filter.isEmpty();
+            } else if (row == null
+                    || (sortColumn >= 0 && !Objects.equals(row[sortColumn], getCachedRow(index)[sortColumn]))) {
+                structural = true;  // Left the filter or moved in the sort order
+            } else {
+                System.arraycopy(row, 0, getCachedRow(index), 0, row.length);
+                fireTableRowsUpdated(index, index);
+            }
+        }
+        version = changes.version;
+        if (!structural) {
+            return;
+        }
+        if (!filter.isEmpty()) {
+            refresh();  // Can't tell whether deleted rows matched the filter
+            return;
+        }
+        dropPages();
+        rowCount = Math.max(0, rowCount + changes.inserted.size() - changes.removed());
+        fireTableDataChanged();
+    }
+
+    private void dropPages() {
+        generation++;
+        pages.clear();
+        pageEnds.clear();
+        pending.clear();
+    }
+
+    // Key of every cached row to its row index
+    private Map<Long, Integer> cachedRowIndexes() {
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (Map.Entry<Integer, Object[][]> entry : pages.entrySet()) {
+            Object[][] rows = entry.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                indexes.put(((Number) rows[i][0]).longValue(), entry.getKey() * PAGE_SIZE + i);
+            }
+        }
+        return indexes;
+    }
+
+    private Object[] getCachedRow(int index) {
+        return pages.get(index / PAGE_SIZE)[index % PAGE_SIZE];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == sortColumn) {
+            return columns[column] + (sortDescending ? " \u25BC" : " \u25B2");
+        }
+        return columns[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        Object[][] rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        prefetchAround(page, row % PAGE_SIZE);
+        int offset = row % PAGE_SIZE;
+        return offset < rows.length ? rows[offset][column] : null;
+    }
+
+    // Keeps a cached row in step after an in-place edit, without a reload
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        Object[][] rows = pages.get(row / PAGE_SIZE);
+        if (rows != null && row % PAGE_SIZE < rows.length) {
+            rows[row % PAGE_SIZE][column] = value;
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    private void prefetchAround(int page, int offset) {
+        if (offset > PAGE_SIZE / 2 && (page + 1) * PAGE_SIZE < rowCount) {
+            requestPage(page + 1);
+        } else if (offset < PAGE_SIZE / 2 && page > 0) {
+            requestPage(page - 1);
+        }
+    }
+
+    private void requestPage(int page) {
+        if (pages.containsKey(page) || !pending.add(page)) {
+            return;
+        }
+        int gen = generation;
+        PageEnd after = page == 0 ? null : pageEnds.get(page - 1);
+        String where = filter;
+        List<Object> params = filterParams;
+        int sort = sortColumn;
+        boolean sortDesc = sortDescending;
+        data.submit(() -> Metrics.time("ui.pageLoad", () -> loadPage(page, after, where, params, sort, sortDesc))).whenComplete(DataAccessExecutor.onEdt((rows, e) -> {
+            if (gen != generation) {
+                return;
+            }
+            pending.remove(page);
+            if (e != null) {
+                return;
+            }
+            pages.put(page, rows);
+            if (rows.length > 0) {
+                Object[] last = rows[rows.length - 1];
+                pageEnds.put(page, new PageEnd(sort >= 0 ? last[sort] : null, ((Number) last[0]).longValue()));
+            }
+            int first = page * PAGE_SIZE;
+            int last = Math.min(rowCount, first + rows.length) - 1;
+            if (last >= first) {
+                fireTableRowsUpdated(first, last);
+            }
+        }));
+    }
+
+    // Seeks past the previous page's last row when we know it; a jump to an
+    // unvisited page (e.g. dragging the scrollbar) falls back to OFFSET once.
+    // With a sort column the seek is on (sort value, key), the key breaking ties.
+    private Object[][] loadPage(int page, PageEnd after, String where, List<Object> whereParams,
+            int sort, boolean sortDesc) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (!where.isEmpty()) {
+            conditions.add(where);
+            params.addAll(whereParams);
+        }
+        String orderBy;
+        boolean seek = after != null;
+        if (sort < 0) {
+            String dir = descending ? " DESC" : " ASC";
+            orderBy = keyColumn + dir;
+            if (seek) {
+                conditions.add(keyColumn + (descending ? " < ?" : " > ?"));
+                params.add(after.key);
+            }
+        } else {
+            String expr = sortExpressions[sort];
+            String dir = sortDesc ? " DESC" : " ASC";
+            orderBy = expr + dir + ", " + keyColumn + dir;
+            // SQLite sorts NULLs first ascending and last descending; the row
+            // value comparison never matches them, so they get their own branch
+            if (seek && after.sortValue == null) {
+                String nullSeek = "(" + expr + " IS NULL AND " + keyColumn + (sortDesc ? " < ?)" : " > ?)");
+                conditions.add(sortDesc ? nullSeek : "(" + nullSeek + " OR " + expr + " IS NOT NULL)");
+                params.add(after.key);
+            } else if (seek) {
+                String seekCondition = "(" + expr + ", " + keyColumn + (sortDesc ? ") < (?, ?)" : ") > (?, ?)");
+                conditions.add(sortDesc ? "(" + seekCondition + " OR " + expr + " IS NULL)" : seekCondition);
+                params.add(after.sortValue);
+                params.add(after.key);
+            }
+        }
+        StringBuilder sql = new StringBuilder(selectSql);
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(orderBy).append(" LIMIT ").append(PAGE_SIZE);
+        if (page > 0 && !seek) {
+            sql.append(" OFFSET ?");
+            params.add((long) page * PAGE_SIZE);
+        }
+        JfrEvents.TableLoad event = new JfrEvents.TableLoad();
+        event.begin();
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            List<Object[]> rows = new ArrayList<>(PAGE_SIZE);
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.sql = sql.toString();
+                event.page = page;
+                event.rows = rows.size();
+                event.commit();
+            }
+            return rows.toArray(new Object[0][]);
+        }
+    }
+
+    // Reads the change log and the current version of each inserted or updated
+    // row that still matches the filter, in one statement via json_each.
+    private Delta loadChanges(long since, String where, List<Object> whereParams) throws SQLException {
+        try (Connection conn = pool.reader()) {
+            ChangeTracker.Changes changes = ChangeTracker.since(conn, changeTable, since);
+            Map<Long, Object[]> rows = new HashMap<>();
+            int wanted = changes.inserted.size() + changes.updated.size();
+            if (!changes.complete || wanted == 0 || changes.size() > MAX_DELTA_ROWS) {
+                return new Delta(changes, rows);
+            }
+            StringBuilder keys = new StringBuilder("[");
+            for (Set<Long> set : List.of(changes.inserted, changes.updated)) {
+                for (long key : set) {
+                    keys.append(keys.length() > 1 ? "," : "").append(key);
+                }
+            }
+            keys.append(']');
+            String sql = selectSql + " WHERE " + (where.isEmpty() ? "" : "(" + where + ") AND ")
+                    + keyColumn + " IN (SELECT value FROM json_each(?))";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int i = 1;
+                for (Object param : whereParams) {
+                    pstmt.setObject(i++, param);
+                }
+                pstmt.setString(i, keys.toString());
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Object[] row = mapper.map(rs);
+                    rows.put(((Number) row[0]).longValue(), row);
+                }
+            }
+            return new Delta(changes, rows);
+        }
+    }
+
+    private long currentVersion() throws SQLException {
+        try (Connection conn = pool.reader()) {
+            return ChangeTracker.currentVersion(conn);
+        }
+    }
+
+    private int count(String where, List<Object> params) throws SQLException {
+        String sql = where.isEmpty() ? countSql : countSql + " WHERE " + where;
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
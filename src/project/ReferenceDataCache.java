@@ -0,0 +1,378 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory id -> name lookup for cards and suppliers, so opening a sale or
+// price dialog doesn't scan those tables. Warmed at startup and kept in step
+// by the CRUD methods after they commit, and by refreshChanges() for writes
+// from other terminals. Suppliers are always held in full; cards are held up
+// to maxCards and evicted least-recently-used beyond that.
+public class ReferenceDataCache {
+
+    // More changed rows than this since the last refresh and it is cheaper to warm() again
+    private static final int RELOAD_THRESHOLD = 1000;
+
+    public static final class CardRef {
+        public final int id;
+        public final String name;
+        public final String category;
+        public final String rarity;
+
+        CardRef(int id, String name, String category, String rarity) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.rarity = rarity;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final int maxCards;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Guarded by this
+    private final LinkedHashMap<Integer, CardRef> cards;
+    private final Map<String, Set<Integer>> cardIdsByName = new HashMap<>();
+    private final Map<Integer, String> suppliers = new LinkedHashMap<>();
+    private final Map<String, Set<Integer>> supplierIdsByName = new HashMap<>();
+    private boolean cardsComplete;
+    private boolean suppliersLoaded;
+    // ChangeLog version the cached rows are current as of
+    private long version;
+    // Bumped by every write to the maps, so a slow miss can't put back a stale row
+    private long generation;
+
+    public ReferenceDataCache(ConnectionPool pool, int maxCards) {
+        this.pool = pool;
+        this.maxCards = maxCards;
+        this.cards = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CardRef> eldest) {
+                if (size() > ReferenceDataCache.this.maxCards) {
+                    unindex(cardIdsByName, eldest.getValue().name, eldest.getKey());
+                    cardsComplete = false;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Loads suppliers and as many cards as fit
+    public void warm() throws SQLException {
+        Map<Integer, String> loadedSuppliers = new LinkedHashMap<>();
+        Map<Integer, CardRef> loadedCards = new LinkedHashMap<>();
+        boolean complete = true;
+        long loadedVersion;
+        try (Connection conn = pool.reader(); Statement stmt = conn.createStatement()) {
+            // Read first: anything committed during the load is applied again by refreshChanges
+            loadedVersion = ChangeTracker.currentVersion(conn);
+            try (ResultSet rs = stmt.executeQuery("SELECT supplier_id, name FROM Suppliers ORDER BY name")) {
+                while (rs.next()) {
+                    loadedSuppliers.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT card_id, name, category, rarity FROM Cards ORDER BY card_id LIMIT " + (maxCards + 1))) {
+                while (rs.next()) {
+                    if (loadedCards.size() == maxCards) {
+                        complete = false;
+                        break;
+                    }
+                    loadedCards.put(rs.getInt(1), new CardRef(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+                }
+            }
+        }
+        synchronized (this) {
+            suppliers.clear();
+            supplierIdsByName.clear();
+            loadedSuppliers.forEach(this::putSupplierLocked);
+            cards.clear();
+            cardIdsByName.clear();
+            loadedCards.values().forEach(this::putCardLocked);
+            cardsComplete = complete;
+            suppliersLoaded = true;
+            version = loadedVersion;
+            generation++;
+        }
+    }
+
+    // Applies Cards and Suppliers changes committed since the last warm or
+    // refresh, whichever terminal made them. Changed rows are read back, deleted
+    // ones dropped; if the log no longer reaches back that far, or too much
+    // changed, everything is loaded again.
+    public void refreshChanges() throws SQLException {
+        long since;
+        synchronized (this) {
+            if (!suppliersLoaded) {
+                return;
+            }
+            since = version;
+        }
+        Map<Integer, CardRef> changedCards = new HashMap<>();
+        Map<Integer, String> changedSuppliers = new HashMap<>();
+        ChangeTracker.Changes cardChanges;
+        ChangeTracker.Changes supplierChanges;
+        try (Connection conn = pool.reader()) {
+            cardChanges = ChangeTracker.since(conn, "Cards", since);
+            supplierChanges = ChangeTracker.since(conn, "Suppliers", since);
+        }
+        if (!cardChanges.complete || !supplierChanges.complete
+                || cardChanges.size() + supplierChanges.size() > RELOAD_THRESHOLD) {
+            warm();
+            return;
+        }
+        try (Connection conn = pool.reader()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT card_id, name, category, rarity FROM Cards WHERE card_id = ?")) {
+                for (long id : concat(cardChanges.inserted, cardChanges.updated)) {
+                    pstmt.setLong(1, id);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next()) {
+                        changedCards.put(rs.getInt(1),
+                                new CardRef(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+                    }
+                    rs.close();
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT supplier_id, name FROM Suppliers WHERE supplier_id = ?")) {
+                for (long id : concat(supplierChanges.inserted, supplierChanges.updated)) {
+                    pstmt.setLong(1, id);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next()) {
+                        changedSuppliers.put(rs.getInt(1), rs.getString(2));
+                    }
+                    rs.close();
+                }
+            }
+        }
+        synchronized (this) {
+            if (version != since) {
+                return;  // warm() or another refresh got there first
+            }
+            for (long id : cardChanges.deleted) {
+                removeCard((int) id);
+            }
+            for (CardRef card : changedCards.values()) {
+                // Rows this terminal doesn't hold are only added while the card list is complete
+                if (cards.containsKey(card.id) || cardsComplete) {
+                    putCard(card.id, card.name, card.category, card.rarity);
+                }
+            }
+            for (long id : supplierChanges.deleted) {
+                removeSupplier((int) id);
+            }
+            changedSuppliers.forEach(this::putSupplier);
+            version = Math.min(cardChanges.version, supplierChanges.version);
+        }
+    }
+
+    public CardRef getCard(int cardId) throws SQLException {
+        synchronized (this) {
+            CardRef card = cards.get(cardId);
+            if (card != null) {
+                hits.incrementAndGet();
+                return card;
+            }
+        }
+        misses.incrementAndGet();
+        long readAt;
+        synchronized (this) {
+            readAt = generation;
+        }
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT card_id, name, category, rarity FROM Cards WHERE card_id = ?")) {
+            pstmt.setInt(1, cardId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            CardRef card = new CardRef(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+            synchronized (this) {
+                CardRef newer = cards.get(cardId);
+                if (newer != null) {
+                    return newer;
+                }
+                // A removeCard while this read ran means the row may be gone
+                if (generation == readAt) {
+                    putCardLocked(card);
+                }
+            }
+            return card;
+        }
+    }
+
+    // Dropdown label -> card_id. Cards sharing a name get their id appended so
+    // none of them is silently dropped.
+    public Map<String, Integer> cardChoices() throws SQLException {
+        synchronized (this) {
+            if (cardsComplete) {
+                hits.incrementAndGet();
+                Map<Integer, String> names = new LinkedHashMap<>();
+                cards.values().stream()
+                        .sorted((a, b) -> Integer.compare(a.id, b.id))
+                        .forEach(card -> names.put(card.id, card.name));
+                return labelled(names, cardIdsByName);
+            }
+        }
+        // Too many cards to hold: read the list, the cache keeps serving by-id lookups
+        misses.incrementAndGet();
+        Map<Integer, String> names = new LinkedHashMap<>();
+        Map<String, Set<Integer>> byName = new HashMap<>();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT card_id, name FROM Cards ORDER BY card_id")) {
+            while (rs.next()) {
+                names.put(rs.getInt(1), rs.getString(2));
+                index(byName, rs.getString(2), rs.getInt(1));
+            }
+        }
+        return labelled(names, byName);
+    }
+
+    public Map<String, Integer> supplierChoices() throws SQLException {
+        synchronized (this) {
+            if (suppliersLoaded) {
+                hits.incrementAndGet();
+                return labelled(new LinkedHashMap<>(suppliers), supplierIdsByName);
+            }
+        }
+        misses.incrementAndGet();
+        warm();
+        synchronized (this) {
+            return labelled(new LinkedHashMap<>(suppliers), supplierIdsByName);
+        }
+    }
+
+    // Distinct supplier names, for filters that match on name
+    public Set<String> supplierNames() throws SQLException {
+        synchronized (this) {
+            if (suppliersLoaded) {
+                hits.incrementAndGet();
+                return new TreeSet<>(supplierIdsByName.keySet());
+            }
+        }
+        misses.incrementAndGet();
+        warm();
+        synchronized (this) {
+            return new TreeSet<>(supplierIdsByName.keySet());
+        }
+    }
+
+    public synchronized Set<Integer> cardIdsNamed(String name) {
+        Set<Integer> ids = cardIdsByName.get(name);
+        return ids == null ? Collections.emptySet() : new TreeSet<>(ids);
+    }
+
+    public synchronized Set<Integer> supplierIdsNamed(String name) {
+        Set<Integer> ids = supplierIdsByName.get(name);
+        return ids == null ? Collections.emptySet() : new TreeSet<>(ids);
+    }
+
+    // Called after the corresponding write has committed
+
+    public synchronized void putCard(int cardId, String name, String category, String rarity) {
+        generation++;
+        CardRef old = cards.remove(cardId);
+        if (old != null) {
+            unindex(cardIdsByName, old.name, cardId);
+        }
+        putCardLocked(new CardRef(cardId, name, category, rarity));
+    }
+
+    public synchronized void removeCard(int cardId) {
+        generation++;
+        CardRef old = cards.remove(cardId);
+        if (old != null) {
+            unindex(cardIdsByName, old.name, cardId);
+        }
+    }
+
+    public synchronized void putSupplier(int supplierId, String name) {
+        generation++;
+        String old = suppliers.remove(supplierId);
+        if (old != null) {
+            unindex(supplierIdsByName, old, supplierId);
+        }
+        putSupplierLocked(supplierId, name);
+    }
+
+    public synchronized void removeSupplier(int supplierId) {
+        generation++;
+        String old = suppliers.remove(supplierId);
+        if (old != null) {
+            unindex(supplierIdsByName, old, supplierId);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized String stats() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format("cards=%d%s suppliers=%d hits=%d misses=%d hitRate=%.1f%%",
+                cards.size(), cardsComplete ? "" : " (partial)", suppliers.size(), h, m,
+                h + m == 0 ? 0.0 : h * 100.0 / (h + m));
+    }
+
+    private void putCardLocked(CardRef card) {
+        cards.put(card.id, card);
+        index(cardIdsByName, card.name, card.id);
+    }
+
+    private void putSupplierLocked(int supplierId, String name) {
+        suppliers.put(supplierId, name);
+        index(supplierIdsByName, name, supplierId);
+    }
+
+    private static void index(Map<String, Set<Integer>> byName, String name, int id) {
+        byName.computeIfAbsent(name, k -> new TreeSet<>()).add(id);
+    }
+
+    private static void unindex(Map<String, Set<Integer>> byName, String name, int id) {
+        Set<Integer> ids = byName.get(name);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                byName.remove(name);
+            }
+        }
+    }
+
+    private static List<Long> concat(Set<Long> a, Set<Long> b) {
+        List<Long> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    private static Map<String, Integer> labelled(Map<Integer, String> names, Map<String, Set<Integer>> byName) {
+        Map<String, Integer> choices = new LinkedHashMap<>();
+        names.forEach((id, name) -> {
+            Set<Integer> ids = byName.get(name);
+            choices.put(ids != null && ids.size() > 1 ? name + " (#" + id + ")" : name, id);
+        });
+        return choices;
+    }
+}
@@ -0,0 +1,700 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Columnar in-memory copy of Sales for ad-hoc group-by questions the SQL reports
+// can't answer cheaply, like revenue by rarity by month or top suppliers per
+// category. Each sale is a slot in parallel primitive arrays; category, rarity
+// and date are int codes into small dictionaries. Queries scan the arrays with
+// fork/join and never touch SQLite, so they don't compete with sale writes.
+//
+// refresh() appends sales past the last sale_id loaded and applies deleted
+// sales and edited cards and suppliers from the ChangeLog. Archived sales stay:
+// a full load also reads the archives attached to the reader (SalesArchive). Readers always see
+// a complete snapshot: appends go past its size, everything else is copied.
+public class SalesAnalytics {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Rows one fork/join task scans before splitting further
+    private static final int SPLIT_ROWS = 1 << 16;
+    private static final String UNKNOWN = "(unknown)";
+
+    public enum Dimension {
+        CATEGORY("Category"),
+        RARITY("Rarity"),
+        SUPPLIER("Supplier"),
+        CARD("Card"),
+        YEAR("Year"),
+        MONTH("Month"),
+        DAY("Day");
+
+        final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        boolean isTime() {
+            return this == YEAR || this == MONTH || this == DAY;
+        }
+    }
+
+    public enum Measure {
+        REVENUE("Revenue"),
+        QUANTITY("Quantity"),
+        SALES("Sales");
+
+        final String label;
+
+        Measure(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Filters are null for "any"; dates compare as yyyy-MM-dd strings like the
+    // SQL reports. topPerGroup keeps the best n rows under each value of the
+    // first dimension (or overall with one dimension), 0 for all.
+    public static final class Query {
+        public final List<Dimension> groupBy;
+        public final Measure rankBy;
+        public final int topPerGroup;
+        public final String dateFrom;
+        public final String dateTo;
+        public final String supplier;
+        public final String category;
+        public final String rarity;
+
+        public Query(List<Dimension> groupBy, Measure rankBy, int topPerGroup, String dateFrom, String dateTo,
+                String supplier, String category, String rarity) {
+            this.groupBy = List.copyOf(groupBy);
+            this.rankBy = rankBy;
+            this.topPerGroup = topPerGroup;
+            this.dateFrom = emptyToNull(dateFrom);
+            this.dateTo = emptyToNull(dateTo);
+            this.supplier = emptyToNull(supplier);
+            this.category = emptyToNull(category);
+            this.rarity = emptyToNull(rarity);
+        }
+    }
+
+    // One row per group: the dimension labels, then sale count, quantity, revenue
+    public static final class Result {
+        public final List<String> columns;
+        public final List<Object[]> rows;
+        public final int salesScanned;
+        public final long nanos;
+
+        Result(List<String> columns, List<Object[]> rows, int salesScanned, long nanos) {
+            this.columns = columns;
+            this.rows = rows;
+            this.salesScanned = salesScanned;
+            this.nanos = nanos;
+        }
+    }
+
+    // Append-only string <-> code mapping; code 0 is UNKNOWN
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            code(UNKNOWN);
+        }
+
+        int code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+
+    // What a query reads; never modified once published
+    private static final class Snapshot {
+        final long version;
+        final int size;
+        final int[] saleIds;
+        final int[] cards;
+        final int[] suppliers;
+        final int[] quantities;
+        final double[] prices;
+        final int[] dates;
+        final BitSet deleted;
+        // By card_id / supplier_id, code 0 or null where unknown
+        final int[] cardCategory;
+        final int[] cardRarity;
+        final String[] cardNames;
+        final String[] supplierNames;
+        // By date code
+        final int[] dateYear;
+        final int[] dateMonth;
+        final String[] categories;
+        final String[] rarities;
+        final String[] dateValues;
+        final String[] years;
+        final String[] months;
+
+        Snapshot(SalesAnalytics source, long version) {
+            this.version = version;
+            this.size = source.size;
+            this.saleIds = source.saleIds;
+            this.cards = source.cards;
+            this.suppliers = source.suppliers;
+            this.quantities = source.quantities;
+            this.prices = source.prices;
+            this.dates = source.dates;
+            this.deleted = source.deleted;
+            this.cardCategory = source.cardCategory;
+            this.cardRarity = source.cardRarity;
+            this.cardNames = source.cardNames;
+            this.supplierNames = source.supplierNames;
+            this.dateYear = Arrays.copyOf(source.dateYear, source.dateValues.size());
+            this.dateMonth = Arrays.copyOf(source.dateMonth, source.dateValues.size());
+            this.categories = source.categories.toArray();
+            this.rarities = source.rarities.toArray();
+            this.dateValues = source.dateValues.toArray();
+            this.years = source.years.toArray();
+            this.months = source.months.toArray();
+        }
+    }
+
+    // Guarded by this; only refresh() writes them
+    private int size;
+    private int[] saleIds = new int[INITIAL_CAPACITY];
+    private int[] cards = new int[INITIAL_CAPACITY];
+    private int[] suppliers = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private BitSet deleted = new BitSet();
+    private int[] cardCategory = new int[0];
+    private int[] cardRarity = new int[0];
+    private String[] cardNames = new String[0];
+    private String[] supplierNames = new String[0];
+    private int[] dateYear = new int[16];
+    private int[] dateMonth = new int[16];
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary rarities = new Dictionary();
+    private final Dictionary dateValues = new Dictionary();
+    private final Dictionary years = new Dictionary();
+    private final Dictionary months = new Dictionary();
+
+    private volatile Snapshot snapshot;
+
+    // Brings the snapshot up to date with the database. The first call loads
+    // every sale; later calls read only what the ChangeLog says is new.
+    public synchronized void refresh(ConnectionPool pool) throws SQLException {
+        Metrics.time("analytics.refresh", () -> {
+            try (Connection conn = pool.reader()) {
+                conn.setAutoCommit(false);  // One read transaction, so the log and the rows agree
+                long version = ChangeTracker.currentVersion(conn);
+                Snapshot current = snapshot;
+                if (current != null && current.version == version) {
+                    return null;
+                }
+                if (current == null || !refreshChanges(conn, current.version)) {
+                    clear();
+                    loadCards(conn, null);
+                    loadSuppliers(conn);
+                    appendSales(conn, 0, SalesArchive.attachedSchemas(conn));
+                }
+                snapshot = new Snapshot(this, version);
+            }
+            return null;
+        });
+    }
+
+    public int getSaleCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.size - current.deleted.cardinality();
+    }
+
+    // False if the changes can't be applied in place and everything must be reloaded
+    private boolean refreshChanges(Connection conn, long since) throws SQLException {
+        ChangeTracker.Changes sales = ChangeTracker.since(conn, "Sales", since);
+        ChangeTracker.Changes cardChanges = ChangeTracker.since(conn, "Cards", since);
+        ChangeTracker.Changes supplierChanges = ChangeTracker.since(conn, "Suppliers", since);
+        if (!sales.complete || !cardChanges.complete || !supplierChanges.complete || !sales.updated.isEmpty()) {
+            return false;
+        }
+        if (!cardChanges.inserted.isEmpty() || !cardChanges.updated.isEmpty()) {
+            Set<Long> changed = new LinkedHashSet<>(cardChanges.inserted);
+            changed.addAll(cardChanges.updated);
+            loadCards(conn, changed);
+        }
+        if (!supplierChanges.isEmpty()) {
+            loadSuppliers(conn);
+        }
+        if (!sales.deleted.isEmpty()) {
+            BitSet updated = (BitSet) deleted.clone();
+            for (long saleId : sales.deleted) {
+                int index = Arrays.binarySearch(saleIds, 0, size, (int) saleId);
+                if (index >= 0) {
+                    updated.set(index);
+                }
+            }
+            deleted = updated;
+        }
+        appendSales(conn, size == 0 ? 0 : saleIds[size - 1], List.of());
+        return true;
+    }
+
+    // Fresh arrays, as a published snapshot may still be reading the old ones
+    private void clear() {
+        size = 0;
+        saleIds = new int[INITIAL_CAPACITY];
+        cards = new int[INITIAL_CAPACITY];
+        suppliers = new int[INITIAL_CAPACITY];
+        quantities = new int[INITIAL_CAPACITY];
+        prices = new double[INITIAL_CAPACITY];
+        dates = new int[INITIAL_CAPACITY];
+        deleted = new BitSet();
+        cardCategory = new int[0];
+        cardRarity = new int[0];
+        cardNames = new String[0];
+        supplierNames = new String[0];
+    }
+
+    // All cards when ids is null. Writes into copies so published snapshots keep theirs.
+    private void loadCards(Connection conn, Set<Long> ids) throws SQLException {
+        String sql = "SELECT card_id, name, category, rarity FROM Cards"
+                + (ids == null ? "" : " WHERE card_id IN (SELECT value FROM json_each(?))");
+        int[] category = cardCategory.clone();
+        int[] rarity = cardRarity.clone();
+        String[] names = cardNames.clone();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (ids != null) {
+                pstmt.setString(1, ids.toString());
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                int cardId = rs.getInt(1);
+                if (cardId >= names.length) {
+                    int length = Math.max(cardId + 1, names.length * 2);
+                    category = Arrays.copyOf(category, length);
+                    rarity = Arrays.copyOf(rarity, length);
+                    names = Arrays.copyOf(names, length);
+                }
+                names[cardId] = rs.getString(2);
+                category[cardId] = categories.code(rs.getString(3));
+                rarity[cardId] = rarities.code(rs.getString(4));
+            }
+        }
+        cardCategory = category;
+        cardRarity = rarity;
+        cardNames = names;
+    }
+
+    private void loadSuppliers(Connection conn) throws SQLException {
+        String[] names = new String[supplierNames.length];
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT supplier_id, name FROM Suppliers")) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                int supplierId = rs.getInt(1);
+                if (supplierId >= names.length) {
+                    names = Arrays.copyOf(names, Math.max(supplierId + 1, names.length * 2));
+                }
+                names[supplierId] = rs.getString(2);
+            }
+        }
+        supplierNames = names;
+    }
+
+    // New sales only ever land in the hot table; archives are read on a full load
+    private void appendSales(Connection conn, int afterSaleId, List<String> archives) throws SQLException {
+        String columns = "sale_id, card_id, supplier_id, quantity, sale_date, sale_price";
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM main.Sales WHERE sale_id > ?");
+        for (String schema : archives) {
+            sql.append(" UNION ALL SELECT ").append(columns).append(" FROM ").append(schema).append(".Sales");
+        }
+        sql.append(" ORDER BY sale_id");
+        int maxCard = cardNames.length - 1;
+        int maxSupplier = supplierNames.length - 1;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            pstmt.setInt(1, afterSaleId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                if (size == saleIds.length) {
+                    grow();
+                }
+                saleIds[size] = rs.getInt(1);
+                cards[size] = rs.getInt(2);
+                suppliers[size] = rs.getInt(3);
+                quantities[size] = rs.getInt(4);
+                dates[size] = dateCode(rs.getString(5));
+                prices[size] = rs.getDouble(6);
+                maxCard = Math.max(maxCard, cards[size]);
+                maxSupplier = Math.max(maxSupplier, suppliers[size]);
+                size++;
+            }
+        }
+        // Sales can outlive their card or supplier; those group as UNKNOWN
+        if (maxCard >= cardNames.length) {
+            cardCategory = Arrays.copyOf(cardCategory, maxCard + 1);
+            cardRarity = Arrays.copyOf(cardRarity, maxCard + 1);
+            cardNames = Arrays.copyOf(cardNames, maxCard + 1);
+        }
+        if (maxSupplier >= supplierNames.length) {
+            supplierNames = Arrays.copyOf(supplierNames, maxSupplier + 1);
+        }
+    }
+
+    private int dateCode(String date) {
+        int code = dateValues.code(date);
+        if (code == dateYear.length) {
+            dateYear = Arrays.copyOf(dateYear, code * 2);
+            dateMonth = Arrays.copyOf(dateMonth, code * 2);
+        }
+        if (code > 0 && dateYear[code] == 0) {
+            dateYear[code] = date.length() >= 4 ? years.code(date.substring(0, 4)) : 0;
+            dateMonth[code] = date.length() >= 7 ? months.code(date.substring(0, 7)) : 0;
+        }
+        return code;
+    }
+
+    private void grow() {
+        int capacity = saleIds.length * 2;
+        saleIds = Arrays.copyOf(saleIds, capacity);
+        cards = Arrays.copyOf(cards, capacity);
+        suppliers = Arrays.copyOf(suppliers, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+    }
+
+    // Runs against the last refreshed snapshot
+    public Result query(Query query) throws SQLException {
+        Snapshot data = snapshot;
+        if (data == null) {
+            throw new IllegalStateException("Analytics snapshot has not been loaded");
+        }
+        long start = System.nanoTime();
+        Plan plan = new Plan(data, query);
+        GroupTable groups = Metrics.time("analytics.query",
+                () -> ForkJoinPool.commonPool().invoke(new Aggregate(plan, 0, data.size)));
+        List<Object[]> rows = plan.rows(groups);
+        List<String> columns = new ArrayList<>();
+        for (Dimension dimension : query.groupBy) {
+            columns.add(dimension.getLabel());
+        }
+        columns.add(Measure.SALES.getLabel());
+        columns.add(Measure.QUANTITY.getLabel());
+        columns.add(Measure.REVENUE.getLabel());
+        return new Result(columns, rows, data.size, System.nanoTime() - start);
+    }
+
+    // A query resolved against one snapshot: per dimension, the column holding
+    // the code (or the id it is looked up by), and the filters as lookup tables
+    private static final class Plan {
+        final Snapshot data;
+        final Query query;
+        final int[][] columns;
+        final int[][] lookups;
+        final String[][] labels;
+        final long[] cardinalities;
+        final boolean[] dateOk;
+        final boolean[] cardOk;
+        final boolean[] supplierOk;
+
+        Plan(Snapshot data, Query query) {
+            this.data = data;
+            this.query = query;
+            int n = query.groupBy.size();
+            columns = new int[n][];
+            lookups = new int[n][];
+            labels = new String[n][];
+            cardinalities = new long[n];
+            long combined = 1;  // Group keys must fit a long
+            for (int d = 0; d < n; d++) {
+                switch (query.groupBy.get(d)) {
+                    case CATEGORY:
+                        columns[d] = data.cards;
+                        lookups[d] = data.cardCategory;
+                        labels[d] = data.categories;
+                        break;
+                    case RARITY:
+                        columns[d] = data.cards;
+                        lookups[d] = data.cardRarity;
+                        labels[d] = data.rarities;
+                        break;
+                    case SUPPLIER:
+                        columns[d] = data.suppliers;
+                        labels[d] = data.supplierNames;
+                        break;
+                    case CARD:
+                        columns[d] = data.cards;
+                        labels[d] = data.cardNames;
+                        break;
+                    case YEAR:
+                        columns[d] = data.dates;
+                        lookups[d] = data.dateYear;
+                        labels[d] = data.years;
+                        break;
+                    case MONTH:
+                        columns[d] = data.dates;
+                        lookups[d] = data.dateMonth;
+                        labels[d] = data.months;
+                        break;
+                    default:
+                        columns[d] = data.dates;
+                        labels[d] = data.dateValues;
+                        break;
+                }
+                cardinalities[d] = Math.max(1, labels[d].length);
+                combined = Math.multiplyExact(combined, cardinalities[d]);
+            }
+
+            dateOk = new boolean[data.dateValues.length];
+            for (int code = 0; code < dateOk.length; code++) {
+                String date = data.dateValues[code];
+                boolean known = code != 0;
+                dateOk[code] = (query.dateFrom == null || (known && date.compareTo(query.dateFrom) >= 0))
+                        && (query.dateTo == null || (known && date.compareTo(query.dateTo) <= 0));
+            }
+            if (query.category == null && query.rarity == null) {
+                cardOk = null;
+            } else {
+                cardOk = new boolean[data.cardNames.length];
+                for (int card = 0; card < cardOk.length; card++) {
+                    cardOk[card] = (query.category == null
+                            || query.category.equals(data.categories[data.cardCategory[card]]))
+                            && (query.rarity == null || query.rarity.equals(data.rarities[data.cardRarity[card]]));
+                }
+            }
+            if (query.supplier == null) {
+                supplierOk = null;
+            } else {
+                supplierOk = new boolean[data.supplierNames.length];
+                for (int supplier = 0; supplier < supplierOk.length; supplier++) {
+                    supplierOk[supplier] = query.supplier.equals(data.supplierNames[supplier]);
+                }
+            }
+        }
+
+        void scan(int from, int to, GroupTable groups) {
+            int[] cards = data.cards;
+            int[] suppliers = data.suppliers;
+            int[] dates = data.dates;
+            int[] quantities = data.quantities;
+            double[] prices = data.prices;
+            BitSet deleted = data.deleted;
+            int dimensions = columns.length;
+            for (int i = from; i < to; i++) {
+                if (!dateOk[dates[i]] || (cardOk != null && !cardOk[cards[i]])
+                        || (supplierOk != null && !supplierOk[suppliers[i]]) || deleted.get(i)) {
+                    continue;
+                }
+                long key = 0;
+                for (int d = 0; d < dimensions; d++) {
+                    int code = columns[d][i];
+                    if (lookups[d] != null) {
+                        code = lookups[d][code];
+                    }
+                    key = key * cardinalities[d] + code;
+                }
+                groups.add(key, 1, quantities[i], quantities[i] * prices[i]);
+            }
+        }
+
+        List<Object[]> rows(GroupTable groups) {
+            int n = columns.length;
+            List<Object[]> rows = new ArrayList<>(groups.size);
+            for (int slot = 0; slot < groups.keys.length; slot++) {
+                long key = groups.keys[slot];
+                if (key < 0) {
+                    continue;
+                }
+                Object[] row = new Object[n + 3];
+                for (int d = n - 1; d >= 0; d--) {
+                    int code = (int) (key % cardinalities[d]);
+                    key /= cardinalities[d];
+                    String label = code < labels[d].length ? labels[d][code] : null;
+                    row[d] = label == null ? UNKNOWN : label;
+                }
+                row[n] = groups.counts[slot];
+                row[n + 1] = groups.quantities[slot];
+                row[n + 2] = groups.revenue[slot];
+                rows.add(row);
+            }
+            return order(rows);
+        }
+
+        // Time dimensions chronologically, others biggest first; topPerGroup is
+        // applied within each value of the first dimension
+        private List<Object[]> order(List<Object[]> rows) {
+            int n = columns.length;
+            if (n == 0) {
+                return rows;
+            }
+            int measure = n + (query.rankBy == Measure.SALES ? 0 : query.rankBy == Measure.QUANTITY ? 1 : 2);
+            Comparator<Object[]> byMeasure = Comparator.comparingDouble(row -> -((Number) row[measure]).doubleValue());
+            Dimension first = query.groupBy.get(0);
+            Map<Object, Double> totals = new HashMap<>();
+            for (Object[] row : rows) {
+                totals.merge(row[0], ((Number) row[measure]).doubleValue(), Double::sum);
+            }
+            Comparator<Object[]> byFirst = first.isTime()
+                    ? Comparator.comparing(row -> (String) row[0])
+                    : Comparator.<Object[]>comparingDouble(row -> -totals.get(row[0])).thenComparing(row -> (String) row[0]);
+            if (n == 1) {
+                rows.sort(first.isTime() ? byFirst : byMeasure);
+                return query.topPerGroup > 0 && rows.size() > query.topPerGroup
+                        ? new ArrayList<>(rows.subList(0, query.topPerGroup)) : rows;
+            }
+            Dimension last = query.groupBy.get(n - 1);
+            Comparator<Object[]> within = last.isTime() && query.topPerGroup == 0
+                    ? Comparator.comparing(row -> (String) row[n - 1]) : byMeasure;
+            rows.sort(byFirst.thenComparing(within));
+            if (query.topPerGroup == 0) {
+                return rows;
+            }
+            Map<Object, Integer> kept = new LinkedHashMap<>();
+            List<Object[]> top = new ArrayList<>();
+            for (Object[] row : rows) {
+                if (kept.merge(row[0], 1, Integer::sum) <= query.topPerGroup) {
+                    top.add(row);
+                }
+            }
+            return top;
+        }
+    }
+
+    @SuppressWarnings("serial")  // fork/join tasks are never serialized
+    private static final class Aggregate extends RecursiveTask<GroupTable> {
+        private final Plan plan;
+        private final int from;
+        private final int to;
+
+        Aggregate(Plan plan, int from, int to) {
+            this.plan = plan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (to - from <= SPLIT_ROWS) {
+                GroupTable groups = new GroupTable();
+                plan.scan(from, to, groups);
+                return groups;
+            }
+            int middle = (from + to) >>> 1;
+            Aggregate left = new Aggregate(plan, from, middle);
+            left.fork();
+            GroupTable right = new Aggregate(plan, middle, to).compute();
+            GroupTable leftGroups = left.join();
+            if (leftGroups.size < right.size) {
+                right.addAll(leftGroups);
+                return right;
+            }
+            leftGroups.addAll(right);
+            return leftGroups;
+        }
+    }
+
+    // Open-addressing map from group key to sale count, quantity and revenue
+    private static final class GroupTable {
+        long[] keys;
+        long[] counts;
+        long[] quantities;
+        double[] revenue;
+        int size;
+
+        GroupTable() {
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, -1);
+            counts = new long[capacity];
+            quantities = new long[capacity];
+            revenue = new double[capacity];
+        }
+
+        void add(long key, long count, long quantity, double amount) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[slot] != key) {
+                if (keys[slot] < 0) {
+                    keys[slot] = key;
+                    if (++size * 2 > keys.length) {
+                        counts[slot] += count;
+                        quantities[slot] += quantity;
+                        revenue[slot] += amount;
+                        rehash();
+                        return;
+                    }
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            counts[slot] += count;
+            quantities[slot] += quantity;
+            revenue[slot] += amount;
+        }
+
+        void addAll(GroupTable other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] >= 0) {
+                    add(other.keys[slot], other.counts[slot], other.quantities[slot], other.revenue[slot]);
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            long[] oldQuantities = quantities;
+            double[] oldRevenue = revenue;
+            allocate(oldKeys.length * 2);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] >= 0) {
+                    add(oldKeys[slot], oldCounts[slot], oldQuantities[slot], oldRevenue[slot]);
+                }
+            }
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,321 @@
+package project;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps the Sales table small by moving sales older than a horizon into one
+// SQLite file per year (sales-2021.db, ...) next to the main database. Day to
+// day screens only ever read the hot table. The archives are ATTACHed to the
+// pool's readers as sales_<year>, and the report detail and export UNION ALL
+// the years their date range reaches back into (covering()). Report totals
+// need nothing extra: DailySalesRollup keeps the archived days.
+//
+// A batch is first copied and committed to the archive, then copied again and
+// deleted from Sales in a second transaction. SQLite doesn't commit attached
+// files atomically together, so a crash in between leaves a sale in both; the
+// next run copies it over itself and deletes it from Sales.
+//
+// Lines of multi-line orders stay in Sales, since order totals are summed
+// from them (OrderService.ORDERS_QUERY).
+//
+// Run headless with: java project.SalesArchive <database file> [horizonDays]
+public class SalesArchive {
+
+    private static final Logger LOG = Logger.getLogger(SalesArchive.class.getName());
+    private static final Pattern FILE_NAME = Pattern.compile("sales-(\\d{4})\\.db");
+    private static final int BATCH_SIZE = 10_000;
+    // SQLite's default SQLITE_MAX_ATTACHED
+    private static final int MAX_ATTACHED = 10;
+    private static final String COLUMNS = "sale_id, card_id, supplier_id, quantity, sale_date, sale_price, order_id";
+
+    public static final int DEFAULT_HORIZON_DAYS = 730;
+
+    private final ConnectionPool pool;
+    private final Path directory;
+
+    public SalesArchive(ConnectionPool pool, Path directory) {
+        this.pool = pool;
+        this.directory = directory;
+    }
+
+    // inventory.db -> inventory-archive, beside it
+    public static Path directoryFor(String dbUrl) {
+        Path db = Paths.get(dbUrl.replaceFirst("^jdbc:sqlite:", "")).toAbsolutePath();
+        String name = db.getFileName().toString().replaceFirst("\\.db$", "");
+        return db.resolveSibling(name + "-archive");
+    }
+
+    public static int horizonDays() {
+        return Integer.getInteger("inventory.archive.horizonDays", DEFAULT_HORIZON_DAYS);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Archived years, oldest first
+    public List<Integer> years() throws SQLException {
+        List<Integer> years = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return years;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "sales-*.db")) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    years.add(Integer.parseInt(m.group(1)));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not list sales archives in " + directory, e);
+        }
+        years.sort(null);
+        return years;
+    }
+
+    public static String schema(int year) {
+        return "sales_" + year;
+    }
+
+    private Path file(int year) {
+        return directory.resolve("sales-" + year + ".db");
+    }
+
+    // Attaches every archive to the pool's readers, as of their next checkout
+    public void attach() throws SQLException {
+        List<Integer> years = years();
+        if (years.size() > MAX_ATTACHED) {
+            LOG.warning("Only the newest " + MAX_ATTACHED + " of " + years.size()
+                    + " sales archives can be attached; older years are left out of reports");
+            years = years.subList(years.size() - MAX_ATTACHED, years.size());
+        }
+        Map<String, String> attachments = new LinkedHashMap<>();
+        for (int year : years) {
+            attachments.put(schema(year), file(year).toString());
+        }
+        pool.setAttachments(attachments);
+    }
+
+    // The query, reading from the attached archives its date range reaches
+    // back into. No file access, so it is fine to call on the EDT.
+    public SalesReportQuery covering(SalesReportQuery query) {
+        List<String> schemas = new ArrayList<>();
+        for (String schema : pool.getAttachments().keySet()) {
+            String year = schema.substring("sales_".length());
+            if ((query.getDateFrom() == null || query.getDateFrom().compareTo(year + "-12-31") <= 0)
+                    && (query.getDateTo() == null || query.getDateTo().compareTo(year + "-01-01") >= 0)) {
+                schemas.add(schema);
+            }
+        }
+        schemas.sort(null);
+        return query.withArchives(schemas);
+    }
+
+    // Archive schemas attached to this connection, oldest first
+    public static List<String> attachedSchemas(Connection conn) throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if (rs.getString("name").matches("sales_\\d{4}")) {
+                    schemas.add(rs.getString("name"));
+                }
+            }
+        }
+        schemas.sort(null);
+        return schemas;
+    }
+
+    // Moves every sale dated before cutoff out of Sales; returns the count per year
+    public Map<Integer, Long> archiveBefore(LocalDate cutoff) throws SQLException {
+        Map<Integer, Long> moved = new TreeMap<>();
+        String oldest;
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT MIN(sale_date) FROM Sales WHERE sale_date < ?")) {
+            pstmt.setString(1, cutoff.toString());
+            ResultSet rs = pstmt.executeQuery();
+            oldest = rs.next() ? rs.getString(1) : null;
+        }
+        if (oldest == null) {
+            return moved;
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SQLException("Could not create " + directory, e);
+        }
+        for (int year = Integer.parseInt(oldest.substring(0, 4)); year <= cutoff.getYear(); year++) {
+            LocalDate end = LocalDate.of(year + 1, 1, 1);
+            LocalDate before = end.isBefore(cutoff) ? end : cutoff;
+            if (hasSales(year + "-01-01", before.toString())) {
+                moved.put(year, archiveYear(year, before));
+            }
+        }
+        attach();
+        return moved;
+    }
+
+    private boolean hasSales(String from, String to) throws SQLException {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT 1 FROM Sales WHERE sale_date >= ? AND sale_date < ? AND order_id IS NULL LIMIT 1")) {
+            pstmt.setString(1, from);
+            pstmt.setString(2, to);
+            return pstmt.executeQuery().next();
+        }
+    }
+
+    private long archiveYear(int year, LocalDate before) throws SQLException {
+        withArchive(year, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS archive.Sales (" +
+                        "sale_id INTEGER PRIMARY KEY," +
+                        "card_id INTEGER," +
+                        "supplier_id INTEGER," +
+                        "quantity INTEGER," +
+                        "sale_date TEXT," +
+                        "sale_price REAL," +
+                        "order_id INTEGER" +
+                        ")");
+                stmt.execute("CREATE INDEX IF NOT EXISTS archive.idx_sales_date_supplier " +
+                        "ON Sales(sale_date, supplier_id)");
+                stmt.execute("DELETE FROM SalesArchiveBatch");  // Left over from an interrupted run
+            }
+            return null;
+        });
+        long count = 0;
+        String from = year + "-01-01";
+        String to = before.toString();
+        while (from.compareTo(to) < 0) {
+            String batchFrom = from;
+            String batchTo = batchEnd(from, to);
+            count += withArchive(year, conn -> moveBatch(conn, batchFrom, batchTo));
+            from = batchTo;
+        }
+        return count;
+    }
+
+    @FunctionalInterface
+    private interface ArchiveTask<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    // Runs on the writer with the year's file attached as "archive". The writer is
+    // checked out per batch, so sales and edits from this terminal get their turn
+    // between batches instead of waiting out the whole run.
+    private <T> T withArchive(int year, ArchiveTask<T> task) throws SQLException {
+        try (Connection conn = pool.writer()) {
+            try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS archive")) {
+                attach.setString(1, file(year).toString());
+                attach.execute();
+            }
+            try {
+                return task.run(conn);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DETACH DATABASE archive");
+                }
+            }
+        }
+    }
+
+    // Ends a batch after whole days, roughly BATCH_SIZE sales past from
+    private String batchEnd(String from, String to) throws SQLException {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT sale_date FROM Sales WHERE sale_date >= ? AND sale_date < ? ORDER BY sale_date LIMIT 1 OFFSET ?")) {
+            pstmt.setString(1, from);
+            pstmt.setString(2, to);
+            pstmt.setInt(3, BATCH_SIZE - 1);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return to;
+            }
+            String next = LocalDate.parse(rs.getString(1).substring(0, 10)).plusDays(1).toString();
+            return next.compareTo(to) < 0 ? next : to;
+        }
+    }
+
+    private static long moveBatch(Connection conn, String from, String to) throws SQLException {
+        String copy = "INSERT OR REPLACE INTO archive.Sales(" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM main.Sales WHERE sale_date >= ? AND sale_date < ? AND order_id IS NULL";
+        // Durable in the archive before anything leaves Sales
+        inTransaction(conn, () -> update(conn, copy, from, to));
+        return inTransaction(conn, () -> {
+            update(conn, "INSERT INTO SalesArchiveBatch(sale_id) SELECT sale_id FROM main.Sales "
+                    + "WHERE sale_date >= ? AND sale_date < ? AND order_id IS NULL", from, to);
+            update(conn, "INSERT OR REPLACE INTO archive.Sales(" + COLUMNS + ") SELECT " + COLUMNS
+                    + " FROM main.Sales WHERE sale_id IN (SELECT sale_id FROM SalesArchiveBatch)");
+            long deleted = update(conn, "DELETE FROM main.Sales WHERE sale_id IN (SELECT sale_id FROM SalesArchiveBatch)");
+            update(conn, "DELETE FROM SalesArchiveBatch");
+            return deleted;
+        });
+    }
+
+    private static long update(Connection conn, String sql, String... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static <T> T inTransaction(Connection conn, DataAccessExecutor.SqlTask<T> work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            T result = work.run();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: SalesArchive <database file> [horizonDays]");
+            System.exit(1);
+        }
+        String url = "jdbc:sqlite:" + args[0];
+        int horizon = args.length > 1 ? Integer.parseInt(args[1]) : horizonDays();
+        LocalDate cutoff = LocalDate.now().minusDays(horizon);
+        ConnectionPool pool = new ConnectionPool(url, 1);
+        try {
+            try (Connection conn = pool.writer()) {
+                InventoryManagementSystem.createSchema(conn);
+            }
+            long start = System.nanoTime();
+            Map<Integer, Long> moved = Metrics.time("archive.run",
+                    () -> new SalesArchive(pool, directoryFor(url)).archiveBefore(cutoff));
+            for (Map.Entry<Integer, Long> entry : moved.entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue() + " sales archived");
+            }
+            System.out.printf("Sales before %s archived to %s in %d ms%n", cutoff, directoryFor(url),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            pool.close();
+        }
+    }
+}
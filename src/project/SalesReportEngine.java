@@ -0,0 +1,101 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Report totals and breakdowns computed with GROUP BY over DailySalesRollup,
+// which holds one row per day, supplier and card instead of one per sale.
+// The rollup is aliased as "s" so SalesReportQuery's WHERE clause applies as is.
+public class SalesReportEngine {
+
+    public enum Breakdown {
+        SUPPLIER("Supplier", "sup.name", "sup.name"),
+        CARD("Card Name", "c.name", "c.card_id, c.name"),
+        DAY("Sale Date", "s.sale_date", "s.sale_date");
+
+        final String label;
+        final String select;
+        final String groupBy;
+
+        Breakdown(String label, String select, String groupBy) {
+            this.label = label;
+            this.select = select;
+            this.groupBy = groupBy;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final class Summary {
+        public final long saleCount;
+        public final long quantity;
+        public final double revenue;
+
+        Summary(long saleCount, long quantity, double revenue) {
+            this.saleCount = saleCount;
+            this.quantity = quantity;
+            this.revenue = revenue;
+        }
+    }
+
+    private static final String FROM =
+            " FROM DailySalesRollup s" +
+            " JOIN Suppliers sup ON s.supplier_id = sup.supplier_id";
+
+    private final ConnectionPool pool;
+
+    public SalesReportEngine(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public Summary summarize(SalesReportQuery query) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(s.sale_count), 0), COALESCE(SUM(s.quantity), 0), " +
+                "COALESCE(SUM(s.revenue), 0)" + FROM + query.whereClause();
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = prepare(conn, sql, query)) {
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return new Summary(rs.getLong(1), rs.getLong(2), rs.getDouble(3));
+        }
+    }
+
+    // SQL for a breakdown: label, sale count, quantity, revenue; biggest revenue first
+    public static String breakdownSql(SalesReportQuery query, Breakdown breakdown) {
+        String join = breakdown == Breakdown.CARD ? " JOIN Cards c ON s.card_id = c.card_id" : "";
+        String order = breakdown == Breakdown.DAY ? "s.sale_date DESC" : "revenue DESC";
+        return "SELECT " + breakdown.select + " AS label, SUM(s.sale_count) AS sale_count, " +
+                "SUM(s.quantity) AS quantity, SUM(s.revenue) AS revenue" +
+                FROM + join + query.whereClause() +
+                " GROUP BY " + breakdown.groupBy +
+                " ORDER BY " + order;
+    }
+
+    public List<Object[]> breakdown(SalesReportQuery query, Breakdown breakdown) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = prepare(conn, breakdownSql(query, breakdown), query)) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rows.add(new Object[] {
+                        rs.getString("label"), rs.getLong("sale_count"), rs.getLong("quantity"), rs.getDouble("revenue")
+                });
+            }
+        }
+        return rows;
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, SalesReportQuery query) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        List<Object> params = query.params();
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+}
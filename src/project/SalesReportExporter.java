@@ -0,0 +1,123 @@
+package project;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+// Streams the filtered sales report from the ResultSet straight into a file,
+// one row at a time, so memory use does not depend on the size of the range.
+public class SalesReportExporter {
+
+    public enum Format { CSV, JSON }
+
+    private static final int PROGRESS_EVERY = 10_000;
+
+    private final ConnectionPool pool;
+
+    public SalesReportExporter(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public static Format formatFor(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? Format.JSON : Format.CSV;
+    }
+
+    // Returns the number of rows written
+    public long export(SalesReportQuery query, Path file, Format format, LongConsumer progress)
+            throws IOException, SQLException {
+        long rows = 0;
+        double totalSales = 0.0;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(query.detailSql())) {
+            List<Object> params = query.params();
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            pstmt.setFetchSize(1000);
+
+            if (format == Format.CSV) {
+                out.write("sale_id,card_name,supplier_name,quantity,sale_date,sale_price,total\n");
+            } else {
+                out.write("{\"supplier\":" + Json.string(query.getSupplierName())
+                        + ",\"from\":" + Json.string(query.getDateFrom())
+                        + ",\"to\":" + Json.string(query.getDateTo())
+                        + ",\"rows\":[");
+            }
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                double total = rs.getDouble("total_price");
+                totalSales += total;
+                if (format == Format.CSV) {
+                    writeCsvRow(out, rs, total);
+                } else {
+                    if (rows > 0) {
+                        out.write(',');
+                    }
+                    writeJsonRow(out, rs, total);
+                }
+                rows++;
+                if (progress != null && rows % PROGRESS_EVERY == 0) {
+                    progress.accept(rows);
+                }
+            }
+
+            if (format == Format.JSON) {
+                out.write("],\"rowCount\":" + rows + ",\"totalSales\":" + money(totalSales) + "}\n");
+            }
+        }
+        if (progress != null) {
+            progress.accept(rows);
+        }
+        return rows;
+    }
+
+    private static void writeCsvRow(Writer out, ResultSet rs, double total) throws IOException, SQLException {
+        out.write(Integer.toString(rs.getInt("sale_id")));
+        out.write(',');
+        out.write(CsvImporter.quote(rs.getString("card_name")));
+        out.write(',');
+        out.write(CsvImporter.quote(rs.getString("supplier_name")));
+        out.write(',');
+        out.write(Integer.toString(rs.getInt("quantity")));
+        out.write(',');
+        out.write(CsvImporter.quote(rs.getString("sale_date")));
+        out.write(',');
+        out.write(money(rs.getDouble("sale_price")));
+        out.write(',');
+        out.write(money(total));
+        out.write('\n');
+    }
+
+    private static void writeJsonRow(Writer out, ResultSet rs, double total) throws IOException, SQLException {
+        out.write("{\"sale_id\":");
+        out.write(Integer.toString(rs.getInt("sale_id")));
+        out.write(",\"card_name\":");
+        out.write(Json.string(rs.getString("card_name")));
+        out.write(",\"supplier_name\":");
+        out.write(Json.string(rs.getString("supplier_name")));
+        out.write(",\"quantity\":");
+        out.write(Integer.toString(rs.getInt("quantity")));
+        out.write(",\"sale_date\":");
+        out.write(Json.string(rs.getString("sale_date")));
+        out.write(",\"sale_price\":");
+        out.write(money(rs.getDouble("sale_price")));
+        out.write(",\"total\":");
+        out.write(money(total));
+        out.write('}');
+    }
+
+    private static String money(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
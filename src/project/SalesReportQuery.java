@@ -0,0 +1,104 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Supplier/date filters of the sales report, turned into SQL. Shared by the
+// report table and the exporter so both always select the same rows.
+// withArchives() makes the detail read archived years too (see SalesArchive).
+public class SalesReportQuery {
+
+    public static final String ALL_SUPPLIERS = "All Suppliers";
+
+    private final String supplierName;
+    private final String dateFrom;
+    private final String dateTo;
+    private final List<String> archives;
+
+    // Empty strings and ALL_SUPPLIERS mean "no filter"
+    public SalesReportQuery(String supplierName, String dateFrom, String dateTo) {
+        this.supplierName = supplierName == null || supplierName.equals(ALL_SUPPLIERS) ? null : supplierName;
+        this.dateFrom = dateFrom == null || dateFrom.isEmpty() ? null : dateFrom;
+        this.dateTo = dateTo == null || dateTo.isEmpty() ? null : dateTo;
+        this.archives = List.of();
+    }
+
+    private SalesReportQuery(SalesReportQuery query, List<String> archives) {
+        this.supplierName = query.supplierName;
+        this.dateFrom = query.dateFrom;
+        this.dateTo = query.dateTo;
+        this.archives = List.copyOf(archives);
+    }
+
+    // Same filters, with the detail also reading these attached archive schemas
+    public SalesReportQuery withArchives(List<String> archives) {
+        return new SalesReportQuery(this, archives);
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+    public String getDateFrom() {
+        return dateFrom;
+    }
+
+    public String getDateTo() {
+        return dateTo;
+    }
+
+    public String detailSql() {
+        return "SELECT s.sale_id, c.name as card_name, sup.name as supplier_name, " +
+                "s.quantity, s.sale_date, s.sale_price, " +
+                "(s.quantity * s.sale_price) as total_price " +
+                "FROM " + salesSource() + " s " +
+                "JOIN Cards c ON s.card_id = c.card_id " +
+                "JOIN Suppliers sup ON s.supplier_id = sup.supplier_id" +
+                whereClause() +
+                " ORDER BY s.sale_date DESC";
+    }
+
+    // The hot table, or it and the archives as one; the WHERE clause is pushed
+    // down into each branch, so every file uses its own sale_date index
+    private String salesSource() {
+        if (archives.isEmpty()) {
+            return "Sales";
+        }
+        String columns = "sale_id, card_id, supplier_id, quantity, sale_date, sale_price";
+        StringBuilder union = new StringBuilder("(SELECT ").append(columns).append(" FROM main.Sales");
+        for (String schema : archives) {
+            union.append(" UNION ALL SELECT ").append(columns).append(" FROM ").append(schema).append(".Sales");
+        }
+        return union.append(")").toString();
+    }
+
+    // WHERE clause over Sales s joined to Suppliers sup, matching params()
+    public String whereClause() {
+        StringBuilder where = new StringBuilder(" WHERE 1=1");
+        if (supplierName != null) {
+            where.append(" AND sup.name = ?");
+        }
+        if (dateFrom != null) {
+            where.append(" AND s.sale_date >= ?");
+        }
+        if (dateTo != null) {
+            where.append(" AND s.sale_date <= ?");
+        }
+        return where.toString();
+    }
+
+    public List<Object> params() {
+        List<Object> params = new ArrayList<>();
+        if (supplierName != null) {
+            params.add(supplierName);
+        }
+        if (dateFrom != null) {
+            params.add(dateFrom);
+        }
+        if (dateTo != null) {
+            params.add(dateTo);
+        }
+        return Collections.unmodifiableList(params);
+    }
+}
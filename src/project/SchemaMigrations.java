@@ -0,0 +1,360 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Ordered schema migrations on top of the base tables created in
+// initializeDatabase. Each one runs once, in its own BEGIN IMMEDIATE
+// transaction, and is recorded in schema_version together with how long it took.
+public class SchemaMigrations {
+
+    private static final Logger LOG = Logger.getLogger(SchemaMigrations.class.getName());
+    private static final int MAX_BEGIN_ATTEMPTS = 10;
+
+    @FunctionalInterface
+    interface Migration {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Step {
+        final int version;
+        final String description;
+        final Migration migration;
+
+        Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+
+    private static final List<Step> STEPS = new ArrayList<>();
+
+    // Name and columns of each Cards index; a large CSV import drops them and
+    // builds them again when it finishes (see CsvImporter)
+    private static final String[][] CARD_INDEXES = {
+            {"idx_cards_name", "name"},
+            {"idx_cards_category_rarity", "category, rarity"},
+            {"idx_cards_rarity", "rarity"},
+            {"idx_cards_value", "value"},
+            {"idx_cards_quantity", "quantity"}
+    };
+
+    private static final String ROLLUP_ADD_NEW =
+            "INSERT INTO DailySalesRollup(sale_date, supplier_id, card_id, sale_count, quantity, revenue) " +
+            "VALUES (new.sale_date, new.supplier_id, new.card_id, 1, new.quantity, new.quantity * new.sale_price) " +
+            "ON CONFLICT(sale_date, supplier_id, card_id) DO UPDATE SET " +
+            "sale_count = sale_count + 1, quantity = quantity + excluded.quantity, " +
+            "revenue = revenue + excluded.revenue; ";
+
+    private static final String ROLLUP_REMOVE_OLD =
+            "UPDATE DailySalesRollup SET sale_count = sale_count - 1, quantity = quantity - old.quantity, " +
+            "revenue = revenue - old.quantity * old.sale_price " +
+            "WHERE sale_date = old.sale_date AND supplier_id = old.supplier_id AND card_id = old.card_id; " +
+            "DELETE FROM DailySalesRollup WHERE sale_date = old.sale_date AND supplier_id = old.supplier_id " +
+            "AND card_id = old.card_id AND sale_count <= 0; ";
+
+    static {
+        // Report date range, optionally narrowed to one supplier
+        add(1, "Index Sales(sale_date, supplier_id)",
+                "CREATE INDEX IF NOT EXISTS idx_sales_date_supplier ON Sales(sale_date, supplier_id)");
+        // comparePrices: WHERE card_id = ? ORDER BY price, answered from the index alone
+        add(2, "Covering index SupplierPrices(card_id, price)",
+                "CREATE INDEX IF NOT EXISTS idx_supplier_prices_card_price "
+                        + "ON SupplierPrices(card_id, price, supplier_id, last_updated)");
+        // Sales -> Cards join and card lookups when restocking
+        add(3, "Index Sales(card_id)",
+                "CREATE INDEX IF NOT EXISTS idx_sales_card ON Sales(card_id)");
+        // Supplier-only report filter and the Sales -> Suppliers join
+        add(4, "Index Sales(supplier_id, sale_date)",
+                "CREATE INDEX IF NOT EXISTS idx_sales_supplier_date ON Sales(supplier_id, sale_date)");
+        // Report filter on sup.name
+        add(5, "Index Suppliers(name)",
+                "CREATE INDEX IF NOT EXISTS idx_suppliers_name ON Suppliers(name)");
+        add(6, "Refresh planner statistics", "ANALYZE");
+        // One current price per (supplier, card); older rows become history
+        add(7, "Unique SupplierPrices(supplier_id, card_id) with SupplierPriceHistory",
+                "CREATE TABLE IF NOT EXISTS SupplierPriceHistory (" +
+                        "history_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "supplier_id INTEGER," +
+                        "card_id INTEGER," +
+                        "price REAL," +
+                        "valid_from DATE," +
+                        "valid_to DATE," +
+                        "FOREIGN KEY(supplier_id) REFERENCES Suppliers(supplier_id)," +
+                        "FOREIGN KEY(card_id) REFERENCES Cards(card_id)" +
+                        ")",
+                "CREATE INDEX IF NOT EXISTS idx_price_history_card_date " +
+                        "ON SupplierPriceHistory(card_id, valid_to, supplier_id)",
+                "INSERT INTO SupplierPriceHistory(supplier_id, card_id, price, valid_from, valid_to) " +
+                        "SELECT sp.supplier_id, sp.card_id, sp.price, sp.last_updated, " +
+                        "COALESCE((SELECT MIN(n.last_updated) FROM SupplierPrices n " +
+                        "WHERE n.supplier_id = sp.supplier_id AND n.card_id = sp.card_id " +
+                        "AND n.price_id > sp.price_id), sp.last_updated) " +
+                        "FROM SupplierPrices sp WHERE sp.price_id NOT IN (" +
+                        "SELECT MAX(price_id) FROM SupplierPrices GROUP BY supplier_id, card_id)",
+                "DELETE FROM SupplierPrices WHERE price_id NOT IN (" +
+                        "SELECT MAX(price_id) FROM SupplierPrices GROUP BY supplier_id, card_id)",
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_supplier_prices_supplier_card " +
+                        "ON SupplierPrices(supplier_id, card_id)",
+                // Any price change, from any code path, archives the old price
+                "CREATE TRIGGER IF NOT EXISTS trg_supplier_prices_history " +
+                        "AFTER UPDATE OF price ON SupplierPrices " +
+                        "WHEN old.price IS NOT new.price BEGIN " +
+                        "INSERT INTO SupplierPriceHistory(supplier_id, card_id, price, valid_from, valid_to) " +
+                        "VALUES (old.supplier_id, old.card_id, old.price, old.last_updated, new.last_updated); " +
+                        "END");
+        // Per day/supplier/card totals so report summaries don't scan Sales.
+        // Triggers keep it in the same transaction as the sale itself.
+        add(8, "DailySalesRollup table maintained by Sales triggers",
+                "CREATE TABLE IF NOT EXISTS DailySalesRollup (" +
+                        "sale_date TEXT NOT NULL," +
+                        "supplier_id INTEGER NOT NULL," +
+                        "card_id INTEGER NOT NULL," +
+                        "sale_count INTEGER NOT NULL," +
+                        "quantity INTEGER NOT NULL," +
+                        "revenue REAL NOT NULL," +
+                        "PRIMARY KEY(sale_date, supplier_id, card_id)" +
+                        ") WITHOUT ROWID",
+                "CREATE INDEX IF NOT EXISTS idx_rollup_supplier_date ON DailySalesRollup(supplier_id, sale_date)",
+                "DELETE FROM DailySalesRollup",
+                "INSERT INTO DailySalesRollup(sale_date, supplier_id, card_id, sale_count, quantity, revenue) " +
+                        "SELECT sale_date, supplier_id, card_id, COUNT(*), SUM(quantity), SUM(quantity * sale_price) " +
+                        "FROM Sales WHERE sale_date IS NOT NULL AND supplier_id IS NOT NULL AND card_id IS NOT NULL " +
+                        "GROUP BY sale_date, supplier_id, card_id",
+                "CREATE TRIGGER IF NOT EXISTS trg_sales_rollup_insert AFTER INSERT ON Sales " +
+                        "WHEN new.sale_date IS NOT NULL AND new.supplier_id IS NOT NULL AND new.card_id IS NOT NULL BEGIN " +
+                        ROLLUP_ADD_NEW +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_sales_rollup_delete AFTER DELETE ON Sales BEGIN " +
+                        ROLLUP_REMOVE_OLD +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_sales_rollup_update " +
+                        "AFTER UPDATE OF card_id, supplier_id, quantity, sale_date, sale_price ON Sales BEGIN " +
+                        ROLLUP_REMOVE_OLD +
+                        "INSERT INTO DailySalesRollup(sale_date, supplier_id, card_id, sale_count, quantity, revenue) " +
+                        "SELECT new.sale_date, new.supplier_id, new.card_id, 1, new.quantity, new.quantity * new.sale_price " +
+                        "WHERE new.sale_date IS NOT NULL AND new.supplier_id IS NOT NULL AND new.card_id IS NOT NULL " +
+                        "ON CONFLICT(sale_date, supplier_id, card_id) DO UPDATE SET " +
+                        "sale_count = sale_count + 1, quantity = quantity + excluded.quantity, " +
+                        "revenue = revenue + excluded.revenue; " +
+                        "END");
+        // Multi-line orders; totals are derived from their Sales rows
+        add(9, "Orders header table and Sales.order_id",
+                "CREATE TABLE IF NOT EXISTS Orders (" +
+                        "order_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "order_date TEXT NOT NULL," +
+                        "created_at TEXT DEFAULT CURRENT_TIMESTAMP," +
+                        "status TEXT NOT NULL DEFAULT 'OPEN'" +
+                        ")",
+                "ALTER TABLE Sales ADD COLUMN order_id INTEGER REFERENCES Orders(order_id)",
+                "CREATE INDEX IF NOT EXISTS idx_sales_order ON Sales(order_id)",
+                "CREATE INDEX IF NOT EXISTS idx_orders_date ON Orders(order_date)");
+        // Full-text index over Cards for the type-ahead card search. External
+        // content table, so only the index is stored; triggers keep it in sync.
+        add(10, "CardSearch FTS5 index over Cards(name, category, rarity)",
+                "CREATE VIRTUAL TABLE IF NOT EXISTS CardSearch USING fts5(" +
+                        "name, category, rarity, content='Cards', content_rowid='card_id', " +
+                        "tokenize='unicode61 remove_diacritics 2', prefix='2 3')",
+                "INSERT INTO CardSearch(CardSearch) VALUES('rebuild')",
+                "CREATE TRIGGER IF NOT EXISTS trg_cards_search_insert AFTER INSERT ON Cards BEGIN " +
+                        "INSERT INTO CardSearch(rowid, name, category, rarity) " +
+                        "VALUES (new.card_id, new.name, new.category, new.rarity); " +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_cards_search_delete AFTER DELETE ON Cards BEGIN " +
+                        "INSERT INTO CardSearch(CardSearch, rowid, name, category, rarity) " +
+                        "VALUES ('delete', old.card_id, old.name, old.category, old.rarity); " +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS trg_cards_search_update " +
+                        "AFTER UPDATE OF name, category, rarity ON Cards BEGIN " +
+                        "INSERT INTO CardSearch(CardSearch, rowid, name, category, rarity) " +
+                        "VALUES ('delete', old.card_id, old.name, old.category, old.rarity); " +
+                        "INSERT INTO CardSearch(rowid, name, category, rarity) " +
+                        "VALUES (new.card_id, new.name, new.category, new.rarity); " +
+                        "END");
+        // Manage Inventory filters and column sorts. Secondary indexes end with
+        // the rowid (card_id), so (value, card_id) keyset pages seek directly.
+        add(11, "Indexes for inventory filters and sorts on Cards", conn -> {
+            createCardIndexes(conn);
+            execute(conn, "ANALYZE Cards");
+        });
+        // Row-level change log so open tables refresh only what changed (see
+        // ChangeTracker). seq is AUTOINCREMENT so it never goes backwards.
+        add(12, "ChangeLog with triggers on Cards, Suppliers and Sales", concat(
+                new String[] {
+                        "CREATE TABLE IF NOT EXISTS ChangeLog (" +
+                                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "table_name TEXT NOT NULL," +
+                                "row_id INTEGER NOT NULL," +
+                                "op TEXT NOT NULL" +
+                                ")",
+                        "CREATE INDEX IF NOT EXISTS idx_changelog_table_seq ON ChangeLog(table_name, seq)"
+                },
+                changeLogTriggers("Cards", "card_id"),
+                changeLogTriggers("Suppliers", "supplier_id"),
+                changeLogTriggers("Sales", "sale_id")));
+        // Open price comparisons follow new prices recorded on other terminals
+        add(13, "ChangeLog triggers on SupplierPrices", changeLogTriggers("SupplierPrices", "price_id"));
+        // Sales moved to an archive file (see SalesArchive) are listed in
+        // SalesArchiveBatch while they are deleted: their rollup rows stay, since
+        // the report totals still cover archived years, and the ChangeLog marks
+        // them A rather than D so the analytics snapshot keeps them.
+        add(14, "SalesArchiveBatch; archived sales keep their rollup and log as A",
+                "CREATE TABLE IF NOT EXISTS SalesArchiveBatch (sale_id INTEGER PRIMARY KEY)",
+                "DROP TRIGGER IF EXISTS trg_sales_rollup_delete",
+                "CREATE TRIGGER trg_sales_rollup_delete AFTER DELETE ON Sales " +
+                        "WHEN old.sale_id NOT IN (SELECT sale_id FROM SalesArchiveBatch) BEGIN " +
+                        ROLLUP_REMOVE_OLD +
+                        "END",
+                "DROP TRIGGER IF EXISTS trg_sales_changelog_delete",
+                "CREATE TRIGGER trg_sales_changelog_delete AFTER DELETE ON Sales BEGIN " +
+                        "INSERT INTO ChangeLog(table_name, row_id, op) VALUES ('Sales', old.sale_id, " +
+                        "CASE WHEN old.sale_id IN (SELECT sale_id FROM SalesArchiveBatch) THEN 'A' ELSE 'D' END); " +
+                        "END");
+    }
+
+    static void createCardIndexes(Connection conn) throws SQLException {
+        for (String[] index : CARD_INDEXES) {
+            execute(conn, "CREATE INDEX IF NOT EXISTS " + index[0] + " ON Cards(" + index[1] + ")");
+        }
+    }
+
+    static void dropCardIndexes(Connection conn) throws SQLException {
+        for (String[] index : CARD_INDEXES) {
+            execute(conn, "DROP INDEX IF EXISTS " + index[0]);
+        }
+    }
+
+    private static String[] changeLogTriggers(String table, String key) {
+        String prefix = "CREATE TRIGGER IF NOT EXISTS trg_" + table.toLowerCase() + "_changelog_";
+        String insert = "INSERT INTO ChangeLog(table_name, row_id, op) VALUES ('" + table + "', ";
+        return new String[] {
+                prefix + "insert AFTER INSERT ON " + table + " BEGIN " + insert + "new." + key + ", 'I'); END",
+                prefix + "update AFTER UPDATE ON " + table + " BEGIN " + insert + "new." + key + ", 'U'); END",
+                prefix + "delete AFTER DELETE ON " + table + " BEGIN " + insert + "old." + key + ", 'D'); END"
+        };
+    }
+
+    private static String[] concat(String[]... parts) {
+        List<String> all = new ArrayList<>();
+        for (String[] part : parts) {
+            all.addAll(List.of(part));
+        }
+        return all.toArray(new String[0]);
+    }
+
+    private static void add(int version, String description, String... statements) {
+        add(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        });
+    }
+
+    private static void add(int version, String description, Migration migration) {
+        if (!STEPS.isEmpty() && STEPS.get(STEPS.size() - 1).version >= version) {
+            throw new IllegalStateException("Migrations must be added in version order: " + version);
+        }
+        STEPS.add(new Step(version, description, migration));
+    }
+
+    // Brings the schema up to date; returns the number of migrations applied
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY," +
+                    "description TEXT," +
+                    "applied_at TEXT DEFAULT CURRENT_TIMESTAMP," +
+                    "duration_ms INTEGER" +
+                    ")");
+        }
+
+        int current = currentVersion(conn);
+        int applied = 0;
+        for (Step step : STEPS) {
+            if (step.version <= current) {
+                continue;
+            }
+            beginImmediate(conn);
+            try {
+                // Another terminal starting at the same time may have applied it
+                // while this one waited for the write lock
+                current = currentVersion(conn);
+                if (step.version <= current) {
+                    execute(conn, "COMMIT");
+                    continue;
+                }
+                long start = System.nanoTime();
+                step.migration.apply(conn);
+                long durationMs = (System.nanoTime() - start) / 1_000_000;
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO schema_version(version, description, duration_ms) VALUES(?, ?, ?)")) {
+                    pstmt.setInt(1, step.version);
+                    pstmt.setString(2, step.description);
+                    pstmt.setLong(3, durationMs);
+                    pstmt.executeUpdate();
+                }
+                execute(conn, "COMMIT");
+                current = step.version;
+                LOG.info(String.format("Applied migration %d (%s) in %d ms", step.version, step.description, durationMs));
+                applied++;
+            } catch (SQLException e) {
+                rollback(conn);
+                throw new SQLException("Migration " + step.version + " (" + step.description + ") failed: "
+                        + e.getMessage(), e);
+            }
+        }
+        // An import that stopped without building its indexes again (see
+        // CsvImporter) is caught up here; a no-op when they all exist
+        if (current >= 11) {
+            createCardIndexes(conn);
+        }
+        return applied;
+    }
+
+    // Takes the write lock before reading schema_version, so two terminals can't
+    // both decide to apply the same step. A long migration elsewhere can outlast
+    // busy_timeout, so busy is retried.
+    private static void beginImmediate(Connection conn) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                execute(conn, "BEGIN IMMEDIATE");
+                return;
+            } catch (SQLException e) {
+                if (!StockReservation.isBusy(e) || attempt == MAX_BEGIN_ATTEMPTS) {
+                    throw e;
+                }
+                StockReservation.backoff(attempt);
+            }
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            execute(conn, "ROLLBACK");
+        } catch (SQLException e) {
+            // SQLite already rolled back after the failure
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
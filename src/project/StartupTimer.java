@@ -0,0 +1,63 @@
+package project;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+// Milestones of application startup, in milliseconds since the JVM process was
+// launched, so class loading and JIT warm-up before main() are counted too.
+// One line is logged once the window is up and the database is ready, and the
+// figures are kept as startup.* gauges.
+//
+// -Dinventory.startupExit=true exits right after that line, for timing runs and
+// for the training run that writes the class-data-sharing archive (run.sh);
+// if startup fails instead, failed() exits with status 1.
+final class StartupTimer {
+
+    private static final Logger LOG = Logger.getLogger(StartupTimer.class.getName());
+
+    static final String MAIN = "main";
+    static final String FIRST_FRAME = "firstFrame";
+    static final String DATABASE_READY = "databaseReady";
+
+    private static final long START_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    private static final Map<String, Long> MARKS = new LinkedHashMap<>();
+    private static boolean reported;
+
+    private StartupTimer() {
+    }
+
+    static synchronized void mark(String milestone) {
+        if (MARKS.containsKey(milestone)) {
+            return;
+        }
+        long millis = System.currentTimeMillis() - START_MILLIS;
+        MARKS.put(milestone, millis);
+        Metrics.gauge("startup." + milestone + "Millis", () -> millis);
+        if (!reported && MARKS.containsKey(FIRST_FRAME) && MARKS.containsKey(DATABASE_READY)) {
+            reported = true;
+            report();
+        }
+    }
+
+    // Startup cannot finish, so a timing or training run would otherwise wait forever
+    static void failed(Throwable cause) {
+        if (Boolean.getBoolean("inventory.startupExit")) {
+            LOG.severe("Startup failed: " + cause);
+            System.exit(1);
+        }
+    }
+
+    private static void report() {
+        StringBuilder line = new StringBuilder("Startup:");
+        for (Map.Entry<String, Long> mark : MARKS.entrySet()) {
+            line.append(' ').append(mark.getKey()).append('=').append(mark.getValue()).append("ms");
+        }
+        LOG.info(line.toString());
+        if (Boolean.getBoolean("inventory.startupExit")) {
+            System.exit(0);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package project;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Sale recording that can't oversell. The stock check and the decrement are a
+// single conditional UPDATE, so two terminals can't both pass the check, and
+// SQLITE_BUSY from another process is retried with jittered backoff instead of
+// surfacing to the user.
+public class StockReservation {
+
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MS = 5;
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private final ConnectionPool pool;
+
+    public StockReservation(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Decrements stock and records the sale in one transaction; returns the new sale_id
+    public long recordSale(int cardId, int supplierId, int quantity, double price) throws SQLException {
+        if (quantity <= 0) {
+            throw new SQLDataException("Quantity must be greater than zero");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = pool.writer()) {
+                conn.setAutoCommit(false);  // Start transaction
+                try {
+                    reserve(conn, cardId, quantity);
+                    long saleId = insertSale(conn, cardId, supplierId, quantity, price);
+                    conn.commit();  // Commit transaction
+                    return saleId;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (!isBusy(e) || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    // Takes quantity out of stock only if enough is there. The UPDATE is the first
+    // write of the transaction, so it also takes SQLite's write lock up front.
+    static void reserve(Connection conn, int cardId, int quantity) throws SQLException {
+        String reserveSQL = "UPDATE Cards SET quantity = quantity - ? WHERE card_id = ? AND quantity >= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(reserveSQL)) {
+            pstmt.setInt(1, quantity);
+            pstmt.setInt(2, cardId);
+            pstmt.setInt(3, quantity);
+            if (pstmt.executeUpdate() == 1) {
+                return;
+            }
+        }
+
+        // Nothing updated: find out why for the error message
+        try (PreparedStatement checkStmt = conn.prepareStatement("SELECT quantity FROM Cards WHERE card_id = ?")) {
+            checkStmt.setInt(1, cardId);
+            ResultSet rs = checkStmt.executeQuery();
+            if (!rs.next()) {
+                throw new SQLIntegrityConstraintViolationException("Card " + cardId + " does not exist");
+            }
+            throw new SQLIntegrityConstraintViolationException("Insufficient quantity available. Current stock: " + rs.getInt("quantity"));
+        }
+    }
+
+    static long insertSale(Connection conn, int cardId, int supplierId, int quantity, double price)
+            throws SQLException {
+        String insertSaleSQL = "INSERT INTO Sales(card_id, supplier_id, quantity, sale_date, sale_price) " +
+                "VALUES(?, ?, ?, date('now'), ?)";
+        try (PreparedStatement saleStmt = conn.prepareStatement(insertSaleSQL, Statement.RETURN_GENERATED_KEYS)) {
+            saleStmt.setInt(1, cardId);
+            saleStmt.setInt(2, supplierId);
+            saleStmt.setInt(3, quantity);
+            saleStmt.setDouble(4, price);
+            saleStmt.executeUpdate();
+            return ConnectionPool.generatedKey(saleStmt);
+        }
+    }
+
+    static boolean isBusy(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                int code = ((SQLException) t).getErrorCode() & 0xff;  // Extended codes keep the primary in the low byte
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("SQLITE_BUSY") || message.contains("database is locked"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void backoff(int attempt) throws SQLException {
+        long max = BASE_BACKOFF_MS << Math.min(attempt, 6);
+        JfrEvents.BusyRetry event = new JfrEvents.BusyRetry();
+        event.begin();
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(max / 2, max + 1));
+            event.attempt = attempt;
+            event.commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying a busy database", e);
+        }
+    }
+}
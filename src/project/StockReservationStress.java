@@ -0,0 +1,122 @@
+package project;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrent sellers against a scratch database. Each seller has its own pool,
+// i.e. its own SQLite connection, like separate terminals sharing inventory.db.
+// Fails (exit code 1) if any stock went negative or stock and sales disagree.
+//
+// java project.StockReservationStress [sellers] [seconds] [cards] [initialStock]
+public class StockReservationStress {
+
+    public static void main(String[] args) throws Exception {
+        int sellers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int cards = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int initialStock = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+        Path db = Files.createTempFile("stock-stress", ".db");
+        String url = "jdbc:sqlite:" + db;
+        ConnectionPool setupPool = new ConnectionPool(url, 1);
+        try (Connection conn = setupPool.writer()) {
+            InventoryManagementSystem.createSchema(conn);
+        }
+        DataGenerator.Config config = new DataGenerator.Config();
+        config.cards = cards;
+        config.suppliers = 1;
+        config.pricesPerCard = 0;
+        config.sales = 0;
+        config.initialStock = initialStock;
+        DataGenerator.generate(setupPool, config, null);
+
+        AtomicLong sold = new AtomicLong();
+        AtomicLong unitsSold = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<ConnectionPool> pools = new ArrayList<>();
+
+        for (int s = 0; s < sellers; s++) {
+            ConnectionPool pool = new ConnectionPool(url, 1);
+            pools.add(pool);
+            StockReservation stock = new StockReservation(pool);
+            Thread seller = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int cardId = 1 + random.nextInt(cards);
+                    int quantity = 1 + random.nextInt(3);
+                    try {
+                        stock.recordSale(cardId, 1, quantity, 1.0);
+                        sold.incrementAndGet();
+                        unitsSold.addAndGet(quantity);
+                    } catch (SQLException e) {
+                        if (e.getMessage() != null && e.getMessage().startsWith("Insufficient quantity")) {
+                            rejected.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            }, "seller-" + s);
+            threads.add(seller);
+            seller.start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        double elapsed = (System.nanoTime() - began) / 1e9;
+        pools.forEach(ConnectionPool::close);
+
+        boolean ok = true;
+        try (Connection conn = setupPool.reader(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Cards WHERE quantity < 0")) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    System.out.println("FAIL: " + rs.getInt(1) + " cards have negative stock");
+                    ok = false;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT (SELECT SUM(quantity) FROM Cards), " +
+                    "(SELECT COALESCE(SUM(quantity), 0) FROM Sales)")) {
+                rs.next();
+                long remaining = rs.getLong(1);
+                long salesUnits = rs.getLong(2);
+                if (remaining + salesUnits != (long) cards * initialStock || salesUnits != unitsSold.get()) {
+                    System.out.printf("FAIL: stock %d + sold %d != initial %d (sellers counted %d)%n",
+                            remaining, salesUnits, (long) cards * initialStock, unitsSold.get());
+                    ok = false;
+                }
+            }
+        } finally {
+            setupPool.close();
+            Files.deleteIfExists(db);
+            Files.deleteIfExists(Path.of(db + "-wal"));
+            Files.deleteIfExists(Path.of(db + "-shm"));
+        }
+
+        System.out.printf("%d sellers, %.1f s: %d sales (%.0f sales/sec), %d rejected for stock, %d errors%n",
+                sellers, elapsed, sold.get(), sold.get() / elapsed, rejected.get(), errors.get());
+        System.out.println(ok ? "OK: no negative stock, stock and sales agree" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+}